@@ -0,0 +1,73 @@
+package com.example.bankcards.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.Caching;
+import java.net.URI;
+import java.time.Duration;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+@Configuration
+@EnableCaching
+public class CacheConfig {
+    
+    public static final String USERS_BY_USERNAME = "usersByUsername";
+    
+    // Hibernate second-level cache regions
+    public static final String USER_ENTITIES = "users";
+    
+    public static final String USER_NATURAL_IDS = "users-by-username";
+    
+    public static final String CARD_ENTITIES = "cards";
+    
+    @Bean
+    public CacheManager cacheManager(@Value("${bank.cache.users.spec}") String usersCacheSpec) {
+        CaffeineCacheManager caffeineCacheManager = new CaffeineCacheManager(USERS_BY_USERNAME);
+        caffeineCacheManager.setCacheSpecification(usersCacheSpec);
+        // Puts and evictions made inside a transaction are applied once it commits,
+        // so a concurrent reader cannot re-cache a row that is about to change
+        return new TransactionAwareCacheManagerProxy(caffeineCacheManager);
+    }
+    
+    /**
+     * Caffeine-backed JCache manager holding the Hibernate second-level cache regions.
+     * Each application context gets its own manager, so contexts never share cached rows.
+     */
+    @Bean(destroyMethod = "close")
+    public javax.cache.CacheManager entityCacheManager(
+            @Value("${bank.cache.entities.users.maximum-size}") long usersMaximumSize,
+            @Value("${bank.cache.entities.users.ttl}") Duration usersTtl,
+            @Value("${bank.cache.entities.cards.maximum-size}") long cardsMaximumSize,
+            @Value("${bank.cache.entities.cards.ttl}") Duration cardsTtl) {
+        javax.cache.CacheManager entityCacheManager = Caching
+                .getCachingProvider(CaffeineCachingProvider.class.getName())
+                .getCacheManager(URI.create("bank-cards:entities:" + UUID.randomUUID()), getClass().getClassLoader());
+        entityCacheManager.createCache(USER_ENTITIES, region(usersMaximumSize, usersTtl));
+        entityCacheManager.createCache(USER_NATURAL_IDS, region(usersMaximumSize, usersTtl));
+        entityCacheManager.createCache(CARD_ENTITIES, region(cardsMaximumSize, cardsTtl));
+        return entityCacheManager;
+    }
+    
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheCustomizer(javax.cache.CacheManager entityCacheManager) {
+        return properties -> properties.put(ConfigSettings.CACHE_MANAGER, entityCacheManager);
+    }
+    
+    private static CaffeineConfiguration<Object, Object> region(long maximumSize, Duration ttl) {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setMaximumSize(OptionalLong.of(maximumSize));
+        configuration.setExpireAfterWrite(OptionalLong.of(ttl.toNanos()));
+        return configuration;
+    }
+}
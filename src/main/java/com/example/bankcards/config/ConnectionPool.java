@@ -0,0 +1,15 @@
+package com.example.bankcards.config;
+
+import java.util.Locale;
+
+/**
+ * Hikari pools behind the routing DataSource. Without @UseConnectionPool a transaction
+ * gets PRIMARY or, when read-only and the replica is usable, REPLICA.
+ */
+public enum ConnectionPool {
+    PRIMARY, REPLICA, TRANSFER, REPORTING;
+    
+    public String getPoolName() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.bankcards.config;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+
+/**
+ * Binds the pool named by @UseConnectionPool to the current thread for the duration of the
+ * call. Ordered ahead of the transaction interceptor, so the pool is in place before the
+ * transaction asks the routing DataSource for a connection.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ConnectionPoolAspect {
+    
+    private static final ThreadLocal<ConnectionPool> CURRENT_POOL = new ThreadLocal<>();
+    
+    static ConnectionPool currentPool() {
+        return CURRENT_POOL.get();
+    }
+    
+    @Around("@annotation(com.example.bankcards.config.UseConnectionPool) || @within(com.example.bankcards.config.UseConnectionPool)")
+    public Object runOnPool(ProceedingJoinPoint joinPoint) throws Throwable {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        Class<?> targetClass = AopUtils.getTargetClass(joinPoint.getTarget());
+        UseConnectionPool annotation = AnnotatedElementUtils.findMergedAnnotation(
+                AopUtils.getMostSpecificMethod(method, targetClass), UseConnectionPool.class);
+        if (annotation == null) {
+            annotation = AnnotatedElementUtils.findMergedAnnotation(targetClass, UseConnectionPool.class);
+        }
+    
+        ConnectionPool previous = CURRENT_POOL.get();
+        CURRENT_POOL.set(annotation.value());
+        try {
+            return joinPoint.proceed();
+        } finally {
+            if (previous != null) {
+                CURRENT_POOL.set(previous);
+            } else {
+                CURRENT_POOL.remove();
+            }
+        }
+    }
+}
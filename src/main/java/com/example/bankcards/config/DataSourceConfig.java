@@ -0,0 +1,134 @@
+package com.example.bankcards.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.util.StringUtils;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Connection pools. The primary pool is configured through spring.datasource as before;
+ * an optional read replica pool is added when bank.datasource.replica.url is set. The
+ * transfer and reporting pools are sized separately, so slow admin searches cannot take
+ * the connections transfers need. The reporting pool connects to the replica when one is
+ * configured; without a replica it uses the primary database, and the isolation from
+ * transfers is only by pool size: its queries still compete for the same CPU, I/O and
+ * locks. Every pool is a bean, so each gets its own hikaricp.* metrics, including pending
+ * threads and acquire timeouts, tagged with its pool name.
+ */
+@Configuration
+public class DataSourceConfig {
+    
+    @Value("${bank.datasource.statement-timeout-sql}")
+    private String statementTimeoutSql;
+    
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        dataSource.setPoolName(ConnectionPool.PRIMARY.getPoolName());
+        return dataSource;
+    }
+    
+    @Bean
+    @ConditionalOnProperty(prefix = "bank.datasource.replica", name = "url")
+    @ConfigurationProperties("bank.datasource.replica.hikari")
+    public HikariDataSource replicaDataSource(DataSourceProperties properties,
+                                              @Value("${bank.datasource.replica.url}") String url,
+                                              @Value("${bank.datasource.replica.username:${spring.datasource.username}}") String username,
+                                              @Value("${bank.datasource.replica.password:${spring.datasource.password:}}") String password,
+                                              @Value("${bank.datasource.replica.statement-timeout:PT0S}") Duration statementTimeout) {
+        HikariDataSource dataSource = pool(ConnectionPool.REPLICA, properties, url, username, password, statementTimeout, "");
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+    
+    @Bean
+    @ConfigurationProperties("bank.datasource.pools.transfer.hikari")
+    public HikariDataSource transferDataSource(DataSourceProperties properties,
+                                               @Value("${bank.datasource.pools.transfer.url:${spring.datasource.url}}") String url,
+                                               @Value("${bank.datasource.pools.transfer.username:${spring.datasource.username}}") String username,
+                                               @Value("${bank.datasource.pools.transfer.password:${spring.datasource.password:}}") String password,
+                                               @Value("${bank.datasource.pools.transfer.statement-timeout:PT0S}") Duration statementTimeout,
+                                               @Value("${bank.datasource.pools.transfer.init-sql:}") String initSql) {
+        return pool(ConnectionPool.TRANSFER, properties, url, username, password, statementTimeout, initSql);
+    }
+    
+    @Bean
+    @ConfigurationProperties("bank.datasource.pools.reporting.hikari")
+    public HikariDataSource reportingDataSource(DataSourceProperties properties,
+                                                @Value("${bank.datasource.pools.reporting.url:${bank.datasource.replica.url:${spring.datasource.url}}}") String url,
+                                                @Value("${bank.datasource.pools.reporting.username:${bank.datasource.replica.username:${spring.datasource.username}}}") String username,
+                                                @Value("${bank.datasource.pools.reporting.password:${bank.datasource.replica.password:${spring.datasource.password:}}}") String password,
+                                                @Value("${bank.datasource.pools.reporting.statement-timeout:PT0S}") Duration statementTimeout,
+                                                @Value("${bank.datasource.pools.reporting.init-sql:}") String initSql) {
+        return pool(ConnectionPool.REPORTING, properties, url, username, password, statementTimeout, initSql);
+    }
+    
+    /**
+     * The DataSource used by JPA and JdbcTemplate. The lazy proxy defers picking a pool until
+     * the first statement, by which time the transaction's read-only flag is known.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                                 @Qualifier("replicaDataSource") ObjectProvider<DataSource> replicaDataSource,
+                                 @Qualifier("transferDataSource") DataSource transferDataSource,
+                                 @Qualifier("reportingDataSource") DataSource reportingDataSource,
+                                 ObjectProvider<ReplicaLagMonitor> replicaLagMonitor,
+                                 ReadYourWritesTracker readYourWritesTracker,
+                                 MeterRegistry meterRegistry) {
+        ReplicaRoutingDataSource routingDataSource = new ReplicaRoutingDataSource(
+                replicaLagMonitor.getIfAvailable(), readYourWritesTracker, meterRegistry);
+        routingDataSource.setTargetDataSources(Map.of(
+                ConnectionPool.PRIMARY, primaryDataSource,
+                ConnectionPool.REPLICA, replicaDataSource.getIfAvailable(() -> primaryDataSource),
+                ConnectionPool.TRANSFER, transferDataSource,
+                ConnectionPool.REPORTING, reportingDataSource));
+        routingDataSource.setDefaultTargetDataSource(primaryDataSource);
+        routingDataSource.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+    
+    private HikariDataSource pool(ConnectionPool pool, DataSourceProperties properties,
+                                  String url, String username, String password, Duration statementTimeout,
+                                  String initSql) {
+        HikariDataSource dataSource = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .driverClassName(properties.determineDriverClassName())
+                .url(url)
+                .username(username)
+                .password(password)
+                .build();
+        dataSource.setPoolName(pool.getPoolName());
+        // Applied once per physical connection, so every statement on the pool is bounded
+        List<String> connectionInitSql = new ArrayList<>();
+        if (!statementTimeout.isZero()) {
+            connectionInitSql.add(statementTimeoutSql.formatted(statementTimeout.toMillis()));
+        }
+        if (StringUtils.hasText(initSql)) {
+            connectionInitSql.add(initSql);
+        }
+        if (!connectionInitSql.isEmpty()) {
+            dataSource.setConnectionInitSql(String.join("; ", connectionInitSql));
+        }
+        return dataSource;
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.bankcards.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+@Configuration
+public class PasswordEncoderConfig {
+    
+    private static final Logger log = LoggerFactory.getLogger(PasswordEncoderConfig.class);
+    
+    private static final int CALIBRATION_SAMPLES = 3;
+    
+    /**
+     * The single PasswordEncoder of the application. With {@code bank.auth.bcrypt.strength: 0}
+     * the cost factor is calibrated at startup to the highest value whose hash time stays
+     * within {@code bank.auth.bcrypt.target-hash-time} on this machine.
+     */
+    @Bean
+    public PasswordEncoder passwordEncoder(@Value("${bank.auth.bcrypt.strength:0}") int strength,
+                                           @Value("${bank.auth.bcrypt.target-hash-time:PT0.25S}") Duration targetHashTime,
+                                           @Value("${bank.auth.bcrypt.min-strength:10}") int minStrength,
+                                           @Value("${bank.auth.bcrypt.max-strength:14}") int maxStrength) {
+        int effectiveStrength = strength > 0 ? strength : calibrate(targetHashTime, minStrength, maxStrength);
+        return new TunedBCryptPasswordEncoder(effectiveStrength);
+    }
+    
+    static int calibrate(Duration targetHashTime, int minStrength, int maxStrength) {
+        long nanosAtMin = measureHashNanos(minStrength);
+        long target = targetHashTime.toNanos();
+        // Each extra cost step doubles the work, so one measurement at the floor predicts the rest
+        int strength = minStrength;
+        long predicted = nanosAtMin;
+        while (strength < maxStrength && predicted * 2 <= target) {
+            strength++;
+            predicted *= 2;
+        }
+        log.info("BCrypt cost calibrated to {} (cost {} took {} ms, target {} ms)",
+                strength, minStrength, nanosAtMin / 1_000_000, targetHashTime.toMillis());
+        return strength;
+    }
+    
+    private static long measureHashNanos(int strength) {
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(strength);
+        String hash = encoder.encode("calibration");
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < CALIBRATION_SAMPLES; i++) {
+            long start = System.nanoTime();
+            encoder.matches("calibration", hash);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+    
+    /**
+     * BCrypt encoder that asks for a rehash when the stored cost is below the configured one.
+     * A higher stored cost is left alone: nodes that calibrate to different costs would
+     * otherwise keep rehashing the same passwords back and forth on every login.
+     */
+    public static class TunedBCryptPasswordEncoder extends BCryptPasswordEncoder {
+    
+        private static final Pattern COST = Pattern.compile("\\A\\$2[aby]?\\$(\\d\\d)\\$");
+    
+        private final int strength;
+    
+        public TunedBCryptPasswordEncoder(int strength) {
+            super(strength);
+            this.strength = strength;
+        }
+    
+        public int getStrength() {
+            return strength;
+        }
+    
+        @Override
+        public boolean upgradeEncoding(String encodedPassword) {
+            if (encodedPassword == null) {
+                return false;
+            }
+            Matcher matcher = COST.matcher(encodedPassword);
+            return matcher.find() && Integer.parseInt(matcher.group(1)) < strength;
+        }
+    }
+}
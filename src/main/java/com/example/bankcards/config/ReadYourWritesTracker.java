@@ -0,0 +1,66 @@
+package com.example.bankcards.config;
+
+import com.example.bankcards.security.AuthenticatedUser;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+
+/**
+ * Remembers which users committed a write recently, so their reads stay on the primary
+ * until the replica has caught up, e.g. a card list fetched right after a transfer. The
+ * window should exceed the replica's max-lag plus the lag check interval. It is kept per
+ * node, so it holds as long as a user's requests stay on the node that took the write.
+ */
+@Component
+public class ReadYourWritesTracker {
+    
+    private final Cache<Long, Boolean> recentWriters;
+    
+    public ReadYourWritesTracker(@Value("${bank.datasource.replica.read-your-writes-window:PT10S}") Duration window,
+                                 @Value("${bank.datasource.replica.max-tracked-users:100000}") long maxTrackedUsers) {
+        this.recentWriters = Caffeine.newBuilder()
+                .maximumSize(maxTrackedUsers)
+                .expireAfterWrite(window)
+                .build();
+    }
+    
+    /**
+     * Starts the current user's window once the current transaction commits.
+     */
+    public void recordWrite() {
+        Long userId = currentUserId();
+        if (userId == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    recentWriters.put(userId, Boolean.TRUE);
+                }
+            });
+        } else {
+            recentWriters.put(userId, Boolean.TRUE);
+        }
+    }
+    
+    public boolean isPinned() {
+        Long userId = currentUserId();
+        return userId != null && recentWriters.getIfPresent(userId) != null;
+    }
+    
+    private static Long currentUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof AuthenticatedUser user) {
+            return user.getId();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.bankcards.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Polls the replica's replication lag. Reads go back to the primary while the lag exceeds
+ * max-lag or the lag query fails, and return to the replica once it has caught up.
+ */
+@Component
+@ConditionalOnProperty(prefix = "bank.datasource.replica", name = "url")
+public class ReplicaLagMonitor {
+    
+    private static final Logger log = LoggerFactory.getLogger(ReplicaLagMonitor.class);
+    
+    private final JdbcTemplate replicaJdbcTemplate;
+    
+    private final String lagQuery;
+    
+    private final double maxLagSeconds;
+    
+    private volatile double lagSeconds = Double.NaN;
+    
+    private volatile boolean usable;
+    
+    public ReplicaLagMonitor(@Qualifier("replicaDataSource") DataSource replicaDataSource,
+                             MeterRegistry meterRegistry,
+                             @Value("${bank.datasource.replica.lag-query}") String lagQuery,
+                             @Value("${bank.datasource.replica.max-lag:PT2S}") Duration maxLag,
+                             @Value("${bank.datasource.replica.lag-check-interval:PT1S}") Duration checkInterval) {
+        this.replicaJdbcTemplate = new JdbcTemplate(replicaDataSource);
+        this.replicaJdbcTemplate.setQueryTimeout((int) Math.max(1, checkInterval.toSeconds()));
+        this.lagQuery = lagQuery;
+        this.maxLagSeconds = maxLag.toMillis() / 1000.0;
+    
+        Gauge.builder("datasource.replica.lag", this, monitor -> monitor.lagSeconds)
+                .description("Replication lag of the read replica; NaN while the lag query fails")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        Gauge.builder("datasource.replica.usable", this, monitor -> monitor.usable ? 1 : 0)
+                .description("1 while read-only transactions are sent to the replica")
+                .register(meterRegistry);
+    }
+    
+    @Scheduled(fixedDelayString = "${bank.datasource.replica.lag-check-interval:PT1S}")
+    public void checkLag() {
+        boolean wasUsable = usable;
+        try {
+            Double lag = replicaJdbcTemplate.queryForObject(lagQuery, Double.class);
+            lagSeconds = lag != null ? lag : 0;
+            usable = lagSeconds <= maxLagSeconds;
+        } catch (DataAccessException e) {
+            lagSeconds = Double.NaN;
+            usable = false;
+            if (wasUsable) {
+                log.warn("Replica lag check failed, sending reads to the primary", e);
+            }
+            return;
+        }
+        if (wasUsable != usable) {
+            log.warn("Replica lag is {}s, sending reads to the {}", lagSeconds, usable ? "replica" : "primary");
+        }
+    }
+    
+    public boolean isUsable() {
+        return usable;
+    }
+}
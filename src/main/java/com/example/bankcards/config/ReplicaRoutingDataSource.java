@@ -0,0 +1,84 @@
+package com.example.bankcards.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Sends work bound to a pool by @UseConnectionPool to that pool, other read-only
+ * transactions to the replica pool and everything else to the primary. A read-only
+ * transaction stays on the primary while the replica is missing or lagging, and while
+ * the current user is inside the read-your-writes window after a commit.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+    
+    private final ReplicaLagMonitor replicaLagMonitor;
+    
+    private final ReadYourWritesTracker readYourWritesTracker;
+    
+    private final Map<ConnectionPool, Counter> annotatedCounters = new EnumMap<>(ConnectionPool.class);
+    
+    private final Counter writeCounter;
+    
+    private final Counter replicaReadCounter;
+    
+    private final Counter pinnedReadCounter;
+    
+    private final Counter fallbackReadCounter;
+    
+    public ReplicaRoutingDataSource(ReplicaLagMonitor replicaLagMonitor,
+                                    ReadYourWritesTracker readYourWritesTracker,
+                                    MeterRegistry meterRegistry) {
+        this.replicaLagMonitor = replicaLagMonitor;
+        this.readYourWritesTracker = readYourWritesTracker;
+        for (ConnectionPool pool : ConnectionPool.values()) {
+            if (pool != ConnectionPool.REPLICA) {
+                annotatedCounters.put(pool, routeCounter(meterRegistry, pool, "annotated"));
+            }
+        }
+        this.writeCounter = routeCounter(meterRegistry, ConnectionPool.PRIMARY, "read-write");
+        this.replicaReadCounter = routeCounter(meterRegistry, ConnectionPool.REPLICA, "read-only");
+        this.pinnedReadCounter = routeCounter(meterRegistry, ConnectionPool.PRIMARY, "read-your-writes");
+        this.fallbackReadCounter = routeCounter(meterRegistry, ConnectionPool.PRIMARY, "replica-unavailable");
+    }
+    
+    @Override
+    protected Object determineCurrentLookupKey() {
+        boolean readOnly = TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+        if (!readOnly && TransactionSynchronizationManager.isActualTransactionActive()) {
+            readYourWritesTracker.recordWrite();
+        }
+        ConnectionPool boundPool = ConnectionPoolAspect.currentPool();
+        // A replica binding still goes through the lag and read-your-writes checks below
+        if (boundPool != null && boundPool != ConnectionPool.REPLICA) {
+            annotatedCounters.get(boundPool).increment();
+            return boundPool;
+        }
+        if (!readOnly) {
+            writeCounter.increment();
+            return ConnectionPool.PRIMARY;
+        }
+        if (replicaLagMonitor == null || !replicaLagMonitor.isUsable()) {
+            fallbackReadCounter.increment();
+            return ConnectionPool.PRIMARY;
+        }
+        if (readYourWritesTracker.isPinned()) {
+            pinnedReadCounter.increment();
+            return ConnectionPool.PRIMARY;
+        }
+        replicaReadCounter.increment();
+        return ConnectionPool.REPLICA;
+    }
+    
+    private static Counter routeCounter(MeterRegistry meterRegistry, ConnectionPool pool, String reason) {
+        return Counter.builder("datasource.routing")
+                .description("Connections handed out by the routing DataSource, by pool and reason")
+                .tag("pool", pool.getPoolName())
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+}
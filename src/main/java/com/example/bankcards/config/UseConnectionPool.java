@@ -0,0 +1,20 @@
+package com.example.bankcards.config;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Runs a method, or every method of a bean, on the named connection pool. It applies to
+ * the transactions the method starts; a method joining a caller's transaction keeps the
+ * caller's connection. A method annotation wins over the class annotation.
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface UseConnectionPool {
+    
+    ConnectionPool value();
+}
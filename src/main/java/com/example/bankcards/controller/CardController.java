@@ -1,9 +1,11 @@
 package com.example.bankcards.controller;
 
 import com.example.bankcards.dto.CardDto;
+import com.example.bankcards.dto.CardNumberResponse;
 import com.example.bankcards.dto.CreateCardRequest;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.service.CardService;
+import com.example.bankcards.util.ETags;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -11,11 +13,13 @@ import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 @RestController
 @RequestMapping("/api/cards")
@@ -40,12 +44,21 @@ public class CardController {
             @Parameter(description = "Card holder name filter") @RequestParam(required = false) String cardHolder,
             @Parameter(description = "Owner username filter (Admin only)") @RequestParam(required = false) String ownerUsername,
             Pageable pageable,
-            Authentication authentication) {
+            Authentication authentication,
+            WebRequest webRequest) {
         
         String username = authentication.getName();
         boolean isAdmin = authentication.getAuthorities().stream()
                 .anyMatch(auth -> auth.getAuthority().equals("ROLE_ADMIN"));
         
+        // A MAX(updated_at)/COUNT probe answers an unchanged poll without loading the page
+        String eTag = isAdmin
+                ? cardService.getAllCardsETag(status, cardHolder, ownerUsername, pageable)
+                : cardService.getCardsETagForUser(username, status, cardHolder, pageable);
+        if (webRequest.checkNotModified(eTag)) {
+            return ETags.notModified(eTag);
+        }
+        
         Page<CardDto> cards;
         if (isAdmin) {
             cards = cardService.searchAllCards(status, cardHolder, ownerUsername, pageable);
@@ -53,19 +66,28 @@ public class CardController {
             cards = cardService.searchCardsByUser(username, status, cardHolder, pageable);
         }
         
-        return ResponseEntity.ok(cards);
+        return ResponseEntity.ok()
+                .cacheControl(ETags.REVALIDATE)
+                .eTag(eTag)
+                .body(cards);
     }
     
     @GetMapping("/{id}")
     @Operation(summary = "Get card by ID", description = "Get card details by ID")
     public ResponseEntity<CardDto> getCardById(
             @Parameter(description = "Card ID") @PathVariable Long id,
-            Authentication authentication) {
+            Authentication authentication,
+            WebRequest webRequest) {
         
         String username = authentication.getName();
         boolean isAdmin = authentication.getAuthorities().stream()
                 .anyMatch(auth -> auth.getAuthority().equals("ROLE_ADMIN"));
         
+        String eTag = cardService.getCardETag(id, username, isAdmin);
+        if (webRequest.checkNotModified(eTag)) {
+            return ETags.notModified(eTag);
+        }
+        
         CardDto card;
         if (isAdmin) {
             card = cardService.getCardById(id);
@@ -73,7 +95,26 @@ public class CardController {
             card = cardService.getCardByIdForUser(id, username);
         }
         
-        return ResponseEntity.ok(card);
+        return ResponseEntity.ok()
+                .cacheControl(ETags.REVALIDATE)
+                .eTag(eTag)
+                .body(card);
+    }
+    
+    @GetMapping("/{id}/number")
+    @Operation(summary = "Reveal card number", description = "Get the full card number (audited)")
+    public ResponseEntity<CardNumberResponse> revealCardNumber(
+            @Parameter(description = "Card ID") @PathVariable Long id,
+            Authentication authentication) {
+        
+        String username = authentication.getName();
+        boolean isAdmin = authentication.getAuthorities().stream()
+                .anyMatch(auth -> auth.getAuthority().equals("ROLE_ADMIN"));
+        
+        CardNumberResponse cardNumber = cardService.revealCardNumber(id, username, isAdmin);
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noStore())
+                .body(cardNumber);
     }
     
     @PutMapping("/{id}/status")
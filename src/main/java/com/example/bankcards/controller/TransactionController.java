@@ -1,9 +1,16 @@
 package com.example.bankcards.controller;
 
+import com.example.bankcards.dto.BatchTransferRequest;
+import com.example.bankcards.dto.BatchTransferResponse;
+import com.example.bankcards.dto.CursorPage;
 import com.example.bankcards.dto.TransactionDto;
 import com.example.bankcards.dto.TransferRequest;
 import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.security.AuthenticatedUser;
+import com.example.bankcards.service.TransactionExportService;
 import com.example.bankcards.service.TransactionService;
+import com.example.bankcards.util.ETags;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -12,11 +19,16 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDateTime;
 
@@ -28,16 +40,29 @@ public class TransactionController {
     @Autowired
     private TransactionService transactionService;
     
+    @Autowired
+    private TransactionExportService transactionExportService;
+    
     @PostMapping("/transfer")
     @Operation(summary = "Transfer between cards", description = "Transfer money between user's own cards")
     public ResponseEntity<TransactionDto> transferBetweenCards(
             @Valid @RequestBody TransferRequest request,
-            Authentication authentication) {
-        String username = authentication.getName();
-        TransactionDto transaction = transactionService.transferBetweenCards(request, username);
+            @Parameter(description = "Client-generated key that makes retries of the same transfer safe")
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            @AuthenticationPrincipal AuthenticatedUser principal) {
+        TransactionDto transaction = transactionService.transferBetweenCards(request, principal.getId(), idempotencyKey);
         return ResponseEntity.status(HttpStatus.CREATED).body(transaction);
     }
     
+    @PostMapping("/transfers/batch")
+    @Operation(summary = "Batch transfer between cards", description = "Apply a list of transfers between user's own cards in order")
+    public ResponseEntity<BatchTransferResponse> transferBatch(
+            @Valid @RequestBody BatchTransferRequest request,
+            @AuthenticationPrincipal AuthenticatedUser principal) {
+        BatchTransferResponse response = transactionService.transferBatch(request.getTransfers(), principal.getId());
+        return ResponseEntity.ok(response);
+    }
+    
     @GetMapping
     @Operation(summary = "Get transactions", description = "Get user's transactions or all transactions (Admin)")
     public ResponseEntity<Page<TransactionDto>> getTransactions(
@@ -47,12 +72,20 @@ public class TransactionController {
             @Parameter(description = "To date filter") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime toDate,
             @Parameter(description = "Username filter (Admin only)") @RequestParam(required = false) String username,
             Pageable pageable,
-            Authentication authentication) {
+            Authentication authentication,
+            WebRequest webRequest) {
         
         String currentUsername = authentication.getName();
         boolean isAdmin = authentication.getAuthorities().stream()
                 .anyMatch(auth -> auth.getAuthority().equals("ROLE_ADMIN"));
         
+        String eTag = isAdmin
+                ? transactionService.getAllTransactionsETag(type, status, fromDate, toDate, username, pageable)
+                : transactionService.getTransactionsETagForUser(currentUsername, type, status, fromDate, toDate, pageable);
+        if (webRequest.checkNotModified(eTag)) {
+            return ETags.notModified(eTag);
+        }
+        
         Page<TransactionDto> transactions;
         if (isAdmin) {
             transactions = transactionService.searchAllTransactions(type, status, fromDate, toDate, username, pageable);
@@ -60,19 +93,70 @@ public class TransactionController {
             transactions = transactionService.searchTransactionsByUser(currentUsername, type, status, fromDate, toDate, pageable);
         }
         
-        return ResponseEntity.ok(transactions);
+        return ResponseEntity.ok()
+                .cacheControl(ETags.REVALIDATE)
+                .eTag(eTag)
+                .body(transactions);
+    }
+    
+    @GetMapping("/export")
+    @Operation(summary = "Export transactions", description = "Stream user's transactions or all transactions (Admin) as CSV or NDJSON")
+    public ResponseEntity<StreamingResponseBody> exportTransactions(
+            @Parameter(description = "Export format: csv or ndjson") @RequestParam(defaultValue = "csv") String format,
+            @Parameter(description = "Transaction type filter") @RequestParam(required = false) Transaction.TransactionType type,
+            @Parameter(description = "Transaction status filter") @RequestParam(required = false) Transaction.TransactionStatus status,
+            @Parameter(description = "From date filter") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fromDate,
+            @Parameter(description = "To date filter") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime toDate,
+            @Parameter(description = "Username filter (Admin only)") @RequestParam(required = false) String username,
+            @AuthenticationPrincipal AuthenticatedUser principal) {
+        
+        TransactionExportService.Format exportFormat = TransactionExportService.Format.fromParameter(format);
+        
+        StreamingResponseBody body;
+        if (principal.getRole() == User.Role.ADMIN) {
+            body = out -> transactionExportService.exportAllTransactions(
+                    type, status, fromDate, toDate, username, exportFormat, out);
+        } else {
+            Long userId = principal.getId();
+            body = out -> transactionExportService.exportUserTransactions(
+                    userId, type, status, fromDate, toDate, exportFormat, out);
+        }
+        
+        ContentDisposition disposition = ContentDisposition.attachment()
+                .filename("transactions." + exportFormat.getExtension())
+                .build();
+        return ResponseEntity.ok()
+                .contentType(exportFormat.getMediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION, disposition.toString())
+                .body(body);
+    }
+    
+    @GetMapping("/history")
+    @Operation(summary = "Get transaction history", description = "Get user's transactions, newest first, using a continuation cursor")
+    public ResponseEntity<CursorPage<TransactionDto>> getTransactionHistory(
+            @Parameter(description = "Cursor returned as nextCursor by the previous page") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Page size (max 100)") @RequestParam(defaultValue = "20") int size,
+            @AuthenticationPrincipal AuthenticatedUser principal) {
+        CursorPage<TransactionDto> history = transactionService.getTransactionHistory(principal.getId(), cursor, size);
+        return ResponseEntity.ok(history);
     }
     
     @GetMapping("/{id}")
     @Operation(summary = "Get transaction by ID", description = "Get transaction details by ID")
     public ResponseEntity<TransactionDto> getTransactionById(
             @Parameter(description = "Transaction ID") @PathVariable Long id,
-            Authentication authentication) {
+            Authentication authentication,
+            WebRequest webRequest) {
         
         String username = authentication.getName();
         boolean isAdmin = authentication.getAuthorities().stream()
                 .anyMatch(auth -> auth.getAuthority().equals("ROLE_ADMIN"));
         
+        String eTag = transactionService.getTransactionETag(id, username, isAdmin);
+        if (webRequest.checkNotModified(eTag)) {
+            return ETags.notModified(eTag);
+        }
+        
         TransactionDto transaction;
         if (isAdmin) {
             transaction = transactionService.getTransactionById(id);
@@ -80,7 +164,10 @@ public class TransactionController {
             transaction = transactionService.getTransactionByIdForUser(id, username);
         }
         
-        return ResponseEntity.ok(transaction);
+        return ResponseEntity.ok()
+                .cacheControl(ETags.REVALIDATE)
+                .eTag(eTag)
+                .body(transaction);
     }
     
     @PutMapping("/{id}/cancel")
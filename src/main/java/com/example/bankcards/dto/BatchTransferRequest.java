@@ -0,0 +1,32 @@
+package com.example.bankcards.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public class BatchTransferRequest {
+    
+    public static final int MAX_TRANSFERS = 5000;
+    
+    @NotEmpty(message = "At least one transfer is required")
+    @Size(max = MAX_TRANSFERS, message = "A batch can contain at most " + MAX_TRANSFERS + " transfers")
+    private List<@Valid TransferRequest> transfers;
+    
+    // Constructors
+    public BatchTransferRequest() {}
+    
+    public BatchTransferRequest(List<TransferRequest> transfers) {
+        this.transfers = transfers;
+    }
+    
+    // Getters and Setters
+    public List<TransferRequest> getTransfers() {
+        return transfers;
+    }
+    
+    public void setTransfers(List<TransferRequest> transfers) {
+        this.transfers = transfers;
+    }
+}
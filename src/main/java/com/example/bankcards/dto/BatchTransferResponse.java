@@ -0,0 +1,59 @@
+package com.example.bankcards.dto;
+
+import java.util.List;
+
+public class BatchTransferResponse {
+    
+    private int total;
+    
+    private int completed;
+    
+    private int failed;
+    
+    private List<BatchTransferResult> results;
+    
+    // Constructors
+    public BatchTransferResponse() {}
+    
+    public BatchTransferResponse(List<BatchTransferResult> results) {
+        this.results = results;
+        this.total = results.size();
+        this.completed = (int) results.stream()
+                .filter(result -> "COMPLETED".equals(result.getStatus()))
+                .count();
+        this.failed = total - completed;
+    }
+    
+    // Getters and Setters
+    public int getTotal() {
+        return total;
+    }
+    
+    public void setTotal(int total) {
+        this.total = total;
+    }
+    
+    public int getCompleted() {
+        return completed;
+    }
+    
+    public void setCompleted(int completed) {
+        this.completed = completed;
+    }
+    
+    public int getFailed() {
+        return failed;
+    }
+    
+    public void setFailed(int failed) {
+        this.failed = failed;
+    }
+    
+    public List<BatchTransferResult> getResults() {
+        return results;
+    }
+    
+    public void setResults(List<BatchTransferResult> results) {
+        this.results = results;
+    }
+}
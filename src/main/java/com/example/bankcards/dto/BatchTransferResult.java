@@ -0,0 +1,55 @@
+package com.example.bankcards.dto;
+
+public class BatchTransferResult {
+    
+    private int index;
+    
+    private String status;
+    
+    private Long transactionId;
+    
+    private String message;
+    
+    // Constructors
+    public BatchTransferResult() {}
+    
+    public BatchTransferResult(int index, String status, Long transactionId, String message) {
+        this.index = index;
+        this.status = status;
+        this.transactionId = transactionId;
+        this.message = message;
+    }
+    
+    // Getters and Setters
+    public int getIndex() {
+        return index;
+    }
+    
+    public void setIndex(int index) {
+        this.index = index;
+    }
+    
+    public String getStatus() {
+        return status;
+    }
+    
+    public void setStatus(String status) {
+        this.status = status;
+    }
+    
+    public Long getTransactionId() {
+        return transactionId;
+    }
+    
+    public void setTransactionId(Long transactionId) {
+        this.transactionId = transactionId;
+    }
+    
+    public String getMessage() {
+        return message;
+    }
+    
+    public void setMessage(String message) {
+        this.message = message;
+    }
+}
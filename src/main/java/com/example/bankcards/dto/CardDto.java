@@ -1,5 +1,6 @@
 package com.example.bankcards.dto;
 
+import com.example.bankcards.entity.Card;
 import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
@@ -49,6 +50,19 @@ public class CardDto {
         this.maskedCardNumber = maskCardNumber(cardNumber);
     }
     
+    // Masked from the stored last four digits; the full number is only returned by the reveal endpoint
+    public CardDto(Long id, String last4, String cardHolder, LocalDate expiryDate, 
+                   Card.CardStatus status, BigDecimal balance, Long ownerId, String ownerUsername) {
+        this.id = id;
+        this.cardHolder = cardHolder;
+        this.expiryDate = expiryDate;
+        this.status = status.name();
+        this.balance = balance;
+        this.ownerId = ownerId;
+        this.ownerUsername = ownerUsername;
+        this.maskedCardNumber = maskCardNumber(last4);
+    }
+    
     private String maskCardNumber(String cardNumber) {
         if (cardNumber == null || cardNumber.length() < 4) {
             return "**** **** **** ****";
@@ -0,0 +1,32 @@
+package com.example.bankcards.dto;
+
+public class CardNumberResponse {
+    
+    private Long cardId;
+    private String cardNumber;
+    
+    // Constructors
+    public CardNumberResponse() {}
+    
+    public CardNumberResponse(Long cardId, String cardNumber) {
+        this.cardId = cardId;
+        this.cardNumber = cardNumber;
+    }
+    
+    // Getters and Setters
+    public Long getCardId() {
+        return cardId;
+    }
+    
+    public void setCardId(Long cardId) {
+        this.cardId = cardId;
+    }
+    
+    public String getCardNumber() {
+        return cardNumber;
+    }
+    
+    public void setCardNumber(String cardNumber) {
+        this.cardNumber = cardNumber;
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.bankcards.dto;
 
+import com.example.bankcards.entity.Transaction;
 import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.NotNull;
 
@@ -58,6 +59,15 @@ public class TransactionDto {
         this.username = username;
     }
     
+    public TransactionDto(Long id, BigDecimal amount, Transaction.TransactionType type, 
+                         Transaction.TransactionStatus status, String description, 
+                         LocalDateTime createdAt, LocalDateTime updatedAt,
+                         Long fromCardId, String fromCardNumber, Long toCardId, 
+                         String toCardNumber, Long userId, String username) {
+        this(id, amount, type.name(), status.name(), description, createdAt, updatedAt,
+                fromCardId, fromCardNumber, toCardId, toCardNumber, userId, username);
+    }
+    
     // Getters and Setters
     public Long getId() {
         return id;
@@ -1,5 +1,6 @@
 package com.example.bankcards.dto;
 
+import com.example.bankcards.entity.User;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
@@ -39,6 +40,10 @@ public class UserDto {
         this.isActive = isActive;
     }
     
+    public UserDto(Long id, String username, String email, String firstName, String lastName, User.Role role, Boolean isActive) {
+        this(id, username, email, firstName, lastName, role.name(), isActive);
+    }
+    
     // Getters and Setters
     public Long getId() {
         return id;
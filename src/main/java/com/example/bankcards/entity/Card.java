@@ -1,10 +1,12 @@
 package com.example.bankcards.entity;
 
+import com.example.bankcards.config.CacheConfig;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
-import jakarta.validation.constraints.Pattern;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -12,17 +14,31 @@ import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "cards")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheConfig.CARD_ENTITIES)
 public class Card {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "cards_seq")
+    @SequenceGenerator(name = "cards_seq", sequenceName = "cards_seq", allocationSize = 50)
     private Long id;
     
+    // AES-GCM ciphertext; the plain number is validated on CreateCardRequest
     @NotBlank(message = "Card number is required")
-    @Pattern(regexp = "^[0-9]{16}$", message = "Card number must be 16 digits")
-    @Column(name = "card_number", unique = true, nullable = false)
+    @Column(name = "card_number", nullable = false)
     private String cardNumber;
     
+    // HMAC of the plain number, used for uniqueness and lookups
+    @Column(name = "card_number_hash", unique = true, length = 64)
+    private String cardNumberHash;
+    
+    // Version of the key cardNumber is encrypted under
+    @Column(name = "key_version", nullable = false)
+    private Integer keyVersion = 1;
+    
+    // Plain last four digits, so masked numbers need no decryption
+    @Column(name = "last4", length = 4)
+    private String last4;
+    
     @NotBlank(message = "Card holder name is required")
     @Column(name = "card_holder", nullable = false)
     private String cardHolder;
@@ -39,6 +55,10 @@ public class Card {
     @Column(nullable = false, precision = 19, scale = 2)
     private BigDecimal balance = BigDecimal.ZERO;
     
+    @Version
+    @Column(nullable = false)
+    private Long version;
+    
     @Column(name = "created_at")
     private LocalDateTime createdAt;
     
@@ -82,11 +102,10 @@ public class Card {
     }
     
     public String getMaskedCardNumber() {
-        if (cardNumber == null || cardNumber.length() < 4) {
+        if (last4 == null) {
             return "**** **** **** ****";
         }
-        String lastFour = cardNumber.substring(cardNumber.length() - 4);
-        return "**** **** **** " + lastFour;
+        return "**** **** **** " + last4;
     }
     
     // Getters and Setters
@@ -106,6 +125,30 @@ public class Card {
         this.cardNumber = cardNumber;
     }
     
+    public String getCardNumberHash() {
+        return cardNumberHash;
+    }
+    
+    public void setCardNumberHash(String cardNumberHash) {
+        this.cardNumberHash = cardNumberHash;
+    }
+    
+    public Integer getKeyVersion() {
+        return keyVersion;
+    }
+    
+    public void setKeyVersion(Integer keyVersion) {
+        this.keyVersion = keyVersion;
+    }
+    
+    public String getLast4() {
+        return last4;
+    }
+    
+    public void setLast4(String last4) {
+        this.last4 = last4;
+    }
+    
     public String getCardHolder() {
         return cardHolder;
     }
@@ -138,6 +181,14 @@ public class Card {
         this.balance = balance;
     }
     
+    public Long getVersion() {
+        return version;
+    }
+    
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+    
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
@@ -0,0 +1,58 @@
+package com.example.bankcards.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Progress of re-encrypting cards under one key version, so the rotation job resumes
+ * where it stopped after a restart.
+ */
+@Entity
+@Table(name = "card_key_rotations")
+public class CardKeyRotation {
+    
+    @Id
+    @Column(name = "key_version")
+    private Integer keyVersion;
+    
+    @Column(name = "last_card_id", nullable = false)
+    private Long lastCardId;
+    
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+    
+    // Constructors
+    public CardKeyRotation() {}
+    
+    public CardKeyRotation(Integer keyVersion, Long lastCardId) {
+        this.keyVersion = keyVersion;
+        this.lastCardId = lastCardId;
+        this.updatedAt = LocalDateTime.now();
+    }
+    
+    // Getters and Setters
+    public Integer getKeyVersion() {
+        return keyVersion;
+    }
+    
+    public void setKeyVersion(Integer keyVersion) {
+        this.keyVersion = keyVersion;
+    }
+    
+    public Long getLastCardId() {
+        return lastCardId;
+    }
+    
+    public void setLastCardId(Long lastCardId) {
+        this.lastCardId = lastCardId;
+    }
+    
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+    
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.bankcards.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Time-limited lease on a scheduled job, so that only one node runs it at a time.
+ * The lease is free once lockedUntil has passed. fencingToken grows with every
+ * acquisition, so a holder that stalled past its lease cannot write after a takeover.
+ */
+@Entity
+@Table(name = "job_locks")
+public class JobLock {
+    
+    @Id
+    @Column(name = "name", length = 100)
+    private String name;
+    
+    @Column(name = "locked_until", nullable = false)
+    private LocalDateTime lockedUntil;
+    
+    @Column(name = "locked_by")
+    private String lockedBy;
+    
+    @Column(name = "fencing_token", nullable = false)
+    private Long fencingToken = 0L;
+    
+    // Constructors
+    public JobLock() {}
+    
+    // Getters and Setters
+    public String getName() {
+        return name;
+    }
+    
+    public void setName(String name) {
+        this.name = name;
+    }
+    
+    public LocalDateTime getLockedUntil() {
+        return lockedUntil;
+    }
+    
+    public void setLockedUntil(LocalDateTime lockedUntil) {
+        this.lockedUntil = lockedUntil;
+    }
+    
+    public String getLockedBy() {
+        return lockedBy;
+    }
+    
+    public void setLockedBy(String lockedBy) {
+        this.lockedBy = lockedBy;
+    }
+    
+    public Long getFencingToken() {
+        return fencingToken;
+    }
+    
+    public void setFencingToken(Long fencingToken) {
+        this.fencingToken = fencingToken;
+    }
+}
@@ -8,11 +8,13 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "transactions")
+@Table(name = "transactions", uniqueConstraints = @UniqueConstraint(
+        name = "uk_transactions_user_idempotency_key", columnNames = {"user_id", "idempotency_key"}))
 public class Transaction {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transactions_seq")
+    @SequenceGenerator(name = "transactions_seq", sequenceName = "transactions_seq", allocationSize = 50)
     private Long id;
     
     @NotNull(message = "Amount is required")
@@ -31,6 +33,12 @@ public class Transaction {
     @Column(name = "description")
     private String description;
     
+    @Column(name = "idempotency_key", length = 64)
+    private String idempotencyKey;
+    
+    @Column(name = "failure_reason")
+    private String failureReason;
+    
     @Column(name = "created_at")
     private LocalDateTime createdAt;
     
@@ -112,6 +120,22 @@ public class Transaction {
         this.description = description;
     }
     
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+    
+    public void setIdempotencyKey(String idempotencyKey) {
+        this.idempotencyKey = idempotencyKey;
+    }
+    
+    public String getFailureReason() {
+        return failureReason;
+    }
+    
+    public void setFailureReason(String failureReason) {
+        this.failureReason = failureReason;
+    }
+    
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
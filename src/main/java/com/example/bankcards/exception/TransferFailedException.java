@@ -0,0 +1,12 @@
+package com.example.bankcards.exception;
+
+public class TransferFailedException extends BusinessException {
+    
+    public TransferFailedException(String message) {
+        super(message);
+    }
+    
+    public TransferFailedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
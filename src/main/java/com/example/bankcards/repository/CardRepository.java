@@ -1,52 +1,155 @@
 package com.example.bankcards.repository;
 
+import com.example.bankcards.dto.CardDto;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.Card.CardStatus;
 import com.example.bankcards.entity.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface CardRepository extends JpaRepository<Card, Long> {
+public interface CardRepository extends JpaRepository<Card, Long>, CardRepositoryCustom {
     
-    Optional<Card> findByCardNumber(String cardNumber);
+    Optional<Card> findByCardNumberHash(String cardNumberHash);
     
     List<Card> findByOwner(User owner);
     
-    Page<Card> findByOwner(User owner, Pageable pageable);
+    // Masked from last4, so list pages never decrypt card numbers
+    String CARD_DTO = "SELECT new com.example.bankcards.dto.CardDto(" +
+            "c.id, c.last4, c.cardHolder, c.expiryDate, c.status, c.balance, o.id, o.username) " +
+            "FROM Card c JOIN c.owner o ";
+    
+    String OWNER_FILTERS = "WHERE c.owner.id = :ownerId AND " +
+            "(:status IS NULL OR c.status = :status) AND " +
+            "(:cardHolder IS NULL OR LOWER(c.cardHolder) LIKE LOWER(CONCAT('%', :cardHolder, '%'))) ";
+    
+    String ADMIN_FILTERS = "WHERE " +
+            "(:status IS NULL OR c.status = :status) AND " +
+            "(:cardHolder IS NULL OR LOWER(c.cardHolder) LIKE LOWER(CONCAT('%', :cardHolder, '%'))) AND " +
+            "(:ownerUsername IS NULL OR LOWER(o.username) LIKE LOWER(CONCAT('%', :ownerUsername, '%'))) ";
+    
+    String LIST_VERSION = "SELECT MAX(c.updatedAt) AS lastUpdated, COUNT(c) AS count FROM Card c ";
+    
+    @Query(CARD_DTO + "WHERE c.id = :id")
+    Optional<CardDto> findDtoById(@Param("id") Long id);
+    
+    @Query(value = CARD_DTO,
+           countQuery = "SELECT COUNT(c) FROM Card c")
+    Page<CardDto> findAllDtos(Pageable pageable);
+    
+    @Query(value = CARD_DTO + "WHERE o.id = :ownerId",
+           countQuery = "SELECT COUNT(c) FROM Card c WHERE c.owner.id = :ownerId")
+    Page<CardDto> findByOwnerId(@Param("ownerId") Long ownerId, Pageable pageable);
     
     List<Card> findByOwnerAndStatus(User owner, CardStatus status);
     
-    @Query("SELECT c FROM Card c WHERE c.owner = :owner AND " +
-           "(:status IS NULL OR c.status = :status) AND " +
-           "(:cardHolder IS NULL OR LOWER(c.cardHolder) LIKE LOWER(CONCAT('%', :cardHolder, '%')))")
-    Page<Card> findByOwnerAndFilters(@Param("owner") User owner,
-                                     @Param("status") CardStatus status,
-                                     @Param("cardHolder") String cardHolder,
-                                     Pageable pageable);
-    
-    @Query("SELECT c FROM Card c WHERE " +
-           "(:status IS NULL OR c.status = :status) AND " +
-           "(:cardHolder IS NULL OR LOWER(c.cardHolder) LIKE LOWER(CONCAT('%', :cardHolder, '%'))) AND " +
-           "(:ownerUsername IS NULL OR LOWER(c.owner.username) LIKE LOWER(CONCAT('%', :ownerUsername, '%')))")
-    Page<Card> findByFilters(@Param("status") CardStatus status,
-                             @Param("cardHolder") String cardHolder,
-                             @Param("ownerUsername") String ownerUsername,
-                             Pageable pageable);
-    
-    @Query("SELECT c FROM Card c WHERE c.expiryDate < :date")
-    List<Card> findExpiredCards(@Param("date") LocalDate date);
+    @Query(value = CARD_DTO + OWNER_FILTERS,
+           countQuery = "SELECT COUNT(c) FROM Card c " + OWNER_FILTERS)
+    Page<CardDto> findByOwnerAndFilters(@Param("ownerId") Long ownerId,
+                                        @Param("status") CardStatus status,
+                                        @Param("cardHolder") String cardHolder,
+                                        Pageable pageable);
+    
+    @Query(value = CARD_DTO + ADMIN_FILTERS,
+           countQuery = "SELECT COUNT(c) FROM Card c JOIN c.owner o " + ADMIN_FILTERS)
+    Page<CardDto> findByFilters(@Param("status") CardStatus status,
+                                @Param("cardHolder") String cardHolder,
+                                @Param("ownerUsername") String ownerUsername,
+                                Pageable pageable);
+    
+    @Query("SELECT c.version AS version, o.username AS ownerUsername FROM Card c JOIN c.owner o WHERE c.id = :id")
+    Optional<CardVersion> findVersionById(@Param("id") Long id);
+    
+    @Query(LIST_VERSION + OWNER_FILTERS)
+    ListVersion findListVersionByOwnerAndFilters(@Param("ownerId") Long ownerId,
+                                                 @Param("status") CardStatus status,
+                                                 @Param("cardHolder") String cardHolder);
+    
+    @Query(LIST_VERSION + "JOIN c.owner o " + ADMIN_FILTERS)
+    ListVersion findListVersionByFilters(@Param("status") CardStatus status,
+                                         @Param("cardHolder") String cardHolder,
+                                         @Param("ownerUsername") String ownerUsername);
+    
+    // Served by the partial index idx_cards_unexpired_expiry
+    @Query("SELECT c.id FROM Card c WHERE c.expiryDate < :today AND c.status <> 'EXPIRED' ORDER BY c.id")
+    List<Long> findIdsToExpire(@Param("today") LocalDate today, Pageable pageable);
     
     @Query("SELECT c FROM Card c WHERE c.owner = :owner AND c.status = 'ACTIVE' AND c.expiryDate > :date")
     List<Card> findActiveCardsByOwner(@Param("owner") User owner, @Param("date") LocalDate date);
     
-    boolean existsByCardNumber(String cardNumber);
+    boolean existsByCardNumberHash(String cardNumberHash);
+    
+    @Query("SELECT c.id AS id, c.cardNumber AS cardNumber, c.cardNumberHash AS cardNumberHash, " +
+           "c.keyVersion AS keyVersion FROM Card c " +
+           "WHERE (c.cardNumberHash IS NULL OR c.last4 IS NULL) AND c.id > :afterId ORDER BY c.id")
+    List<StoredCardNumber> findCardNumbersToBackfill(@Param("afterId") Long afterId, Pageable pageable);
+    
+    // Bumps version, so saving a Card loaded before the rewrite fails instead of restoring the old number.
+    // Bulk updates skip @PreUpdate, so updatedAt is set here for the list ETags.
+    @Modifying
+    @Query("UPDATE Card c SET c.cardNumber = :cardNumber, c.keyVersion = :keyVersion, " +
+           "c.cardNumberHash = :cardNumberHash, c.last4 = :last4, c.version = c.version + 1, " +
+           "c.updatedAt = CURRENT_TIMESTAMP " +
+           "WHERE c.id = :id AND c.cardNumber = :previousCardNumber")
+    int updateCardNumber(@Param("id") Long id,
+                         @Param("previousCardNumber") String previousCardNumber,
+                         @Param("cardNumber") String cardNumber,
+                         @Param("keyVersion") Integer keyVersion,
+                         @Param("cardNumberHash") String cardNumberHash,
+                         @Param("last4") String last4);
+    
+    // Bumps version like updateCardNumber, so the single-card ETag changes with the masked number
+    @Modifying
+    @Query("UPDATE Card c SET c.last4 = :last4, c.version = c.version + 1, c.updatedAt = CURRENT_TIMESTAMP " +
+           "WHERE c.id = :id")
+    int updateLast4(@Param("id") Long id, @Param("last4") String last4);
+    
+    @Query("SELECT c.id AS id, c.owner.id AS ownerId FROM Card c WHERE c.id IN :ids")
+    List<CardOwnership> findOwnershipByIdIn(@Param("ids") Collection<Long> ids);
+    
+    @Query("SELECT c FROM Card c JOIN FETCH c.owner WHERE c.id IN :ids")
+    List<Card> findAllWithOwnerByIdIn(@Param("ids") Collection<Long> ids);
+    
+    /**
+     * Locks the given cards with SELECT ... FOR UPDATE. Rows are returned and locked in
+     * ascending id order, so two transactions locking an overlapping set of cards always
+     * acquire the locks in the same order and cannot deadlock each other.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Card c WHERE c.id IN :ids ORDER BY c.id")
+    List<Card> findAllByIdForUpdate(@Param("ids") Collection<Long> ids);
+    
+    interface CardVersion {
+        Long getVersion();
+        
+        String getOwnerUsername();
+    }
+    
+    interface CardOwnership {
+        Long getId();
+        
+        Long getOwnerId();
+    }
+    
+    interface StoredCardNumber {
+        Long getId();
+        
+        String getCardNumber();
+        
+        String getCardNumberHash();
+        
+        Integer getKeyVersion();
+    }
 }
@@ -0,0 +1,17 @@
+package com.example.bankcards.repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+public interface CardRepositoryCustom {
+    
+    int debitIfSufficient(Long id, BigDecimal amount, LocalDate today, LocalDateTime now);
+    
+    int creditIfActive(Long id, BigDecimal amount, LocalDate today, LocalDateTime now);
+    
+    int expireCards(Collection<Long> ids, LocalDate today, LocalDateTime now);
+    
+    void evictFromCache(Long id);
+}
@@ -0,0 +1,86 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.Card;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.query.NativeQuery;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+/**
+ * Bulk card updates written as native SQL. A JPQL bulk update would invalidate the whole
+ * cards cache region; the empty synchronized query space tells Hibernate these statements
+ * touch no cached entity, and only the updated cards are evicted instead.
+ */
+public class CardRepositoryImpl implements CardRepositoryCustom {
+    
+    private static final String DEBIT_IF_SUFFICIENT =
+            "UPDATE cards SET balance = balance - :amount, version = version + 1, updated_at = :now " +
+            "WHERE id = :id AND balance >= :amount AND status = 'ACTIVE' AND expiry_date >= :today";
+    
+    private static final String CREDIT_IF_ACTIVE =
+            "UPDATE cards SET balance = balance + :amount, version = version + 1, updated_at = :now " +
+            "WHERE id = :id AND status = 'ACTIVE' AND expiry_date >= :today";
+    
+    private static final String EXPIRE_CARDS =
+            "UPDATE cards SET status = 'EXPIRED', version = version + 1, updated_at = :now " +
+            "WHERE id IN (:ids) AND expiry_date < :today AND status <> 'EXPIRED'";
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Override
+    public int debitIfSufficient(Long id, BigDecimal amount, LocalDate today, LocalDateTime now) {
+        return updateBalance(DEBIT_IF_SUFFICIENT, id, amount, today, now);
+    }
+    
+    @Override
+    public int creditIfActive(Long id, BigDecimal amount, LocalDate today, LocalDateTime now) {
+        return updateBalance(CREDIT_IF_ACTIVE, id, amount, today, now);
+    }
+    
+    @Override
+    public int expireCards(Collection<Long> ids, LocalDate today, LocalDateTime now) {
+        int updated = entityManager.createNativeQuery(EXPIRE_CARDS)
+                .unwrap(NativeQuery.class)
+                .addSynchronizedQuerySpace("")
+                .setParameterList("ids", ids)
+                .setParameter("today", today)
+                .setParameter("now", now)
+                .executeUpdate();
+        ids.forEach(this::evictFromCache);
+        return updated;
+    }
+    
+    @Override
+    public void evictFromCache(Long id) {
+        entityManager.getEntityManagerFactory().getCache().evict(Card.class, id);
+        // Evict again once the change is visible, so a concurrent read cannot re-cache the old row
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    entityManager.getEntityManagerFactory().getCache().evict(Card.class, id);
+                }
+            });
+        }
+    }
+    
+    private int updateBalance(String sql, Long id, BigDecimal amount, LocalDate today, LocalDateTime now) {
+        int updated = entityManager.createNativeQuery(sql)
+                .unwrap(NativeQuery.class)
+                .addSynchronizedQuerySpace("")
+                .setParameter("id", id)
+                .setParameter("amount", amount)
+                .setParameter("today", today)
+                .setParameter("now", now)
+                .executeUpdate();
+        evictFromCache(id);
+        return updated;
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.JobLock;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface JobLockRepository extends JpaRepository<JobLock, String> {
+    
+    // Creates the row on first use; a duplicate key means another node created it first
+    @Modifying
+    @Query(value = "INSERT INTO job_locks (name, locked_until, fencing_token) VALUES (:name, :lockedUntil, 0)",
+           nativeQuery = true)
+    int insertIfAbsent(@Param("name") String name, @Param("lockedUntil") LocalDateTime lockedUntil);
+    
+    @Modifying
+    @Query("UPDATE JobLock l SET l.lockedUntil = :lockedUntil, l.lockedBy = :owner, " +
+           "l.fencingToken = l.fencingToken + 1 " +
+           "WHERE l.name = :name AND l.lockedUntil <= :now")
+    int tryAcquire(@Param("name") String name,
+                   @Param("owner") String owner,
+                   @Param("now") LocalDateTime now,
+                   @Param("lockedUntil") LocalDateTime lockedUntil);
+    
+    @Query("SELECT l.fencingToken FROM JobLock l WHERE l.name = :name")
+    Optional<Long> findFencingToken(@Param("name") String name);
+    
+    // Succeeds even after the lease ran out, as long as nobody has taken it over since
+    @Modifying
+    @Query("UPDATE JobLock l SET l.lockedUntil = :lockedUntil " +
+           "WHERE l.name = :name AND l.lockedBy = :owner AND l.fencingToken = :token")
+    int renew(@Param("name") String name,
+              @Param("owner") String owner,
+              @Param("token") long token,
+              @Param("lockedUntil") LocalDateTime lockedUntil);
+    
+    @Modifying
+    @Query("UPDATE JobLock l SET l.lockedUntil = :now " +
+           "WHERE l.name = :name AND l.lockedBy = :owner AND l.fencingToken = :token")
+    int release(@Param("name") String name,
+                @Param("owner") String owner,
+                @Param("token") long token,
+                @Param("now") LocalDateTime now);
+}
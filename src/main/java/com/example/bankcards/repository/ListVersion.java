@@ -0,0 +1,12 @@
+package com.example.bankcards.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Cheap probe of a filtered list: any insert or update moves lastUpdated, any delete changes count.
+ */
+public interface ListVersion {
+    LocalDateTime getLastUpdated();
+    
+    long getCount();
+}
@@ -1,54 +1,159 @@
 package com.example.bankcards.repository;
 
+import com.example.bankcards.dto.TransactionDto;
 import com.example.bankcards.entity.Transaction;
 import com.example.bankcards.entity.Transaction.TransactionStatus;
 import com.example.bankcards.entity.Transaction.TransactionType;
 import com.example.bankcards.entity.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface TransactionRepository extends JpaRepository<Transaction, Long> {
     
     List<Transaction> findByUser(User user);
     
-    Page<Transaction> findByUser(User user, Pageable pageable);
+    // Builds TransactionDto in the SELECT so read paths never touch the lazy card and user associations.
+    // Masked like Card.getMaskedCardNumber, including cards whose last4 has not been backfilled yet
+    String TRANSACTION_DTO = "SELECT new com.example.bankcards.dto.TransactionDto(" +
+            "t.id, t.amount, t.type, t.status, t.description, t.createdAt, t.updatedAt, " +
+            "fc.id, CASE WHEN fc.id IS NOT NULL THEN CONCAT('**** **** **** ', COALESCE(fc.last4, '****')) END, " +
+            "tc.id, CASE WHEN tc.id IS NOT NULL THEN CONCAT('**** **** **** ', COALESCE(tc.last4, '****')) END, " +
+            "u.id, u.username) " +
+            "FROM Transaction t LEFT JOIN t.fromCard fc LEFT JOIN t.toCard tc JOIN t.user u ";
     
-    @Query("SELECT t FROM Transaction t WHERE t.user = :user AND " +
-           "(:type IS NULL OR t.type = :type) AND " +
-           "(:status IS NULL OR t.status = :status) AND " +
-           "(:fromDate IS NULL OR t.createdAt >= :fromDate) AND " +
-           "(:toDate IS NULL OR t.createdAt <= :toDate)")
-    Page<Transaction> findByUserAndFilters(@Param("user") User user,
-                                           @Param("type") TransactionType type,
+    String USER_FILTERS = "WHERE t.user.id = :userId AND " +
+            "(:type IS NULL OR t.type = :type) AND " +
+            "(:status IS NULL OR t.status = :status) AND " +
+            "(:fromDate IS NULL OR t.createdAt >= :fromDate) AND " +
+            "(:toDate IS NULL OR t.createdAt <= :toDate) ";
+    
+    String ADMIN_FILTERS = "WHERE " +
+            "(:type IS NULL OR t.type = :type) AND " +
+            "(:status IS NULL OR t.status = :status) AND " +
+            "(:fromDate IS NULL OR t.createdAt >= :fromDate) AND " +
+            "(:toDate IS NULL OR t.createdAt <= :toDate) AND " +
+            "(:username IS NULL OR LOWER(u.username) LIKE LOWER(CONCAT('%', :username, '%'))) ";
+    
+    // The masked card numbers are part of the rows, so a card change (e.g. a last4 backfill) changes the version too.
+    // GREATEST returns NULL for any NULL argument on some databases, hence the COALESCE for transactions without cards.
+    String LIST_VERSION = "SELECT GREATEST(MAX(t.updatedAt), " +
+            "COALESCE(MAX(fc.updatedAt), MAX(t.updatedAt)), COALESCE(MAX(tc.updatedAt), MAX(t.updatedAt))) AS lastUpdated, " +
+            "COUNT(t) AS count FROM Transaction t LEFT JOIN t.fromCard fc LEFT JOIN t.toCard tc JOIN t.user u ";
+    
+    @Query(TRANSACTION_DTO + "WHERE t.id = :id")
+    Optional<TransactionDto> findDtoById(@Param("id") Long id);
+    
+    @Query("SELECT t.failureReason FROM Transaction t WHERE t.id = :id")
+    Optional<String> findFailureReasonById(@Param("id") Long id);
+    
+    @Query(value = TRANSACTION_DTO,
+           countQuery = "SELECT COUNT(t) FROM Transaction t")
+    Page<TransactionDto> findAllDtos(Pageable pageable);
+    
+    @Query(value = TRANSACTION_DTO + "WHERE u.id = :userId",
+           countQuery = "SELECT COUNT(t) FROM Transaction t WHERE t.user.id = :userId")
+    Page<TransactionDto> findByUserId(@Param("userId") Long userId, Pageable pageable);
+    
+    @Query(value = TRANSACTION_DTO + USER_FILTERS,
+           countQuery = "SELECT COUNT(t) FROM Transaction t " + USER_FILTERS)
+    Page<TransactionDto> findByUserAndFilters(@Param("userId") Long userId,
+                                              @Param("type") TransactionType type,
+                                              @Param("status") TransactionStatus status,
+                                              @Param("fromDate") LocalDateTime fromDate,
+                                              @Param("toDate") LocalDateTime toDate,
+                                              Pageable pageable);
+    
+    @Query(value = TRANSACTION_DTO + ADMIN_FILTERS,
+           countQuery = "SELECT COUNT(t) FROM Transaction t JOIN t.user u " + ADMIN_FILTERS)
+    Page<TransactionDto> findByFilters(@Param("type") TransactionType type,
+                                       @Param("status") TransactionStatus status,
+                                       @Param("fromDate") LocalDateTime fromDate,
+                                       @Param("toDate") LocalDateTime toDate,
+                                       @Param("username") String username,
+                                       Pageable pageable);
+    
+    @Query("SELECT t.updatedAt AS updatedAt, fc.updatedAt AS fromCardUpdatedAt, tc.updatedAt AS toCardUpdatedAt, " +
+           "u.username AS username " +
+           "FROM Transaction t LEFT JOIN t.fromCard fc LEFT JOIN t.toCard tc JOIN t.user u WHERE t.id = :id")
+    Optional<TransactionVersion> findVersionById(@Param("id") Long id);
+    
+    @Query(LIST_VERSION + USER_FILTERS)
+    ListVersion findListVersionByUserAndFilters(@Param("userId") Long userId,
+                                                @Param("type") TransactionType type,
+                                                @Param("status") TransactionStatus status,
+                                                @Param("fromDate") LocalDateTime fromDate,
+                                                @Param("toDate") LocalDateTime toDate);
+    
+    @Query(LIST_VERSION + ADMIN_FILTERS)
+    ListVersion findListVersionByFilters(@Param("type") TransactionType type,
+                                         @Param("status") TransactionStatus status,
+                                         @Param("fromDate") LocalDateTime fromDate,
+                                         @Param("toDate") LocalDateTime toDate,
+                                         @Param("username") String username);
+    
+    // Streams must be consumed inside a transaction; the fetch size keeps the driver from buffering the whole result
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query(TRANSACTION_DTO + USER_FILTERS + "ORDER BY t.createdAt, t.id")
+    Stream<TransactionDto> streamByUserAndFilters(@Param("userId") Long userId,
+                                                  @Param("type") TransactionType type,
+                                                  @Param("status") TransactionStatus status,
+                                                  @Param("fromDate") LocalDateTime fromDate,
+                                                  @Param("toDate") LocalDateTime toDate);
+    
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query(TRANSACTION_DTO + ADMIN_FILTERS + "ORDER BY t.createdAt, t.id")
+    Stream<TransactionDto> streamByFilters(@Param("type") TransactionType type,
                                            @Param("status") TransactionStatus status,
                                            @Param("fromDate") LocalDateTime fromDate,
                                            @Param("toDate") LocalDateTime toDate,
-                                           Pageable pageable);
-    
-    @Query("SELECT t FROM Transaction t WHERE " +
-           "(:type IS NULL OR t.type = :type) AND " +
-           "(:status IS NULL OR t.status = :status) AND " +
-           "(:fromDate IS NULL OR t.createdAt >= :fromDate) AND " +
-           "(:toDate IS NULL OR t.createdAt <= :toDate) AND " +
-           "(:username IS NULL OR LOWER(t.user.username) LIKE LOWER(CONCAT('%', :username, '%')))")
-    Page<Transaction> findByFilters(@Param("type") TransactionType type,
-                                    @Param("status") TransactionStatus status,
-                                    @Param("fromDate") LocalDateTime fromDate,
-                                    @Param("toDate") LocalDateTime toDate,
-                                    @Param("username") String username,
-                                    Pageable pageable);
-    
-    @Query("SELECT t FROM Transaction t WHERE t.status = 'PENDING' AND t.createdAt < :cutoffTime")
-    List<Transaction> findPendingTransactionsOlderThan(@Param("cutoffTime") LocalDateTime cutoffTime);
+                                           @Param("username") String username);
+    
+    @Query(TRANSACTION_DTO + "WHERE u.id = :userId ORDER BY t.createdAt DESC, t.id DESC")
+    List<TransactionDto> findHistoryByUserId(@Param("userId") Long userId, Pageable pageable);
+    
+    // The redundant createdAt <= :createdAt bound lets the (user_id, created_at, id) index seek straight to the cursor
+    @Query(TRANSACTION_DTO + "WHERE u.id = :userId AND t.createdAt <= :createdAt AND " +
+           "(t.createdAt < :createdAt OR t.id < :id) " +
+           "ORDER BY t.createdAt DESC, t.id DESC")
+    List<TransactionDto> findHistoryByUserIdBefore(@Param("userId") Long userId,
+                                                   @Param("createdAt") LocalDateTime createdAt,
+                                                   @Param("id") Long id,
+                                                   Pageable pageable);
+    
+    @Query(TRANSACTION_DTO + "WHERE u.id = :userId AND t.idempotencyKey = :idempotencyKey")
+    Optional<TransactionDto> findByUserIdAndIdempotencyKey(@Param("userId") Long userId,
+                                                           @Param("idempotencyKey") String idempotencyKey);
+    
+    // Called with ids PendingTransactionSweeper has locked with FOR UPDATE SKIP LOCKED
+    @Modifying
+    @Query("UPDATE Transaction t SET t.status = 'FAILED', t.updatedAt = :now WHERE t.id IN :ids AND t.status = 'PENDING'")
+    int markFailed(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
     
     @Query("SELECT t FROM Transaction t WHERE t.fromCard = :card OR t.toCard = :card")
     List<Transaction> findByCard(@Param("card") com.example.bankcards.entity.Card card);
+    
+    interface TransactionVersion {
+        LocalDateTime getUpdatedAt();
+        
+        LocalDateTime getFromCardUpdatedAt();
+        
+        LocalDateTime getToCardUpdatedAt();
+        
+        String getUsername();
+    }
 }
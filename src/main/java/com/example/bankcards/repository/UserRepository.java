@@ -1,9 +1,11 @@
 package com.example.bankcards.repository;
 
+import com.example.bankcards.dto.UserDto;
 import com.example.bankcards.entity.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -11,9 +13,7 @@ import org.springframework.stereotype.Repository;
 import java.util.Optional;
 
 @Repository
-public interface UserRepository extends JpaRepository<User, Long> {
-    
-    Optional<User> findByUsername(String username);
+public interface UserRepository extends JpaRepository<User, Long>, UserRepositoryCustom {
     
     Optional<User> findByEmail(String email);
     
@@ -21,17 +21,44 @@ public interface UserRepository extends JpaRepository<User, Long> {
     
     boolean existsByEmail(String email);
     
-    @Query("SELECT u FROM User u WHERE u.isActive = true")
-    Page<User> findAllActive(Pageable pageable);
+    String USER_DTO = "SELECT new com.example.bankcards.dto.UserDto(" +
+            "u.id, u.username, u.email, u.firstName, u.lastName, u.role, u.isActive) FROM User u ";
+    
+    @Query(value = USER_DTO + "WHERE u.isActive = true",
+           countQuery = "SELECT COUNT(u) FROM User u WHERE u.isActive = true")
+    Page<UserDto> findAllActive(Pageable pageable);
     
-    @Query("SELECT u FROM User u WHERE " +
+    @Query(value = USER_DTO + "WHERE " +
+           "(:username IS NULL OR LOWER(u.username) LIKE LOWER(CONCAT('%', :username, '%'))) AND " +
+           "(:email IS NULL OR LOWER(u.email) LIKE LOWER(CONCAT('%', :email, '%'))) AND " +
+           "(:firstName IS NULL OR LOWER(u.firstName) LIKE LOWER(CONCAT('%', :firstName, '%'))) AND " +
+           "(:lastName IS NULL OR LOWER(u.lastName) LIKE LOWER(CONCAT('%', :lastName, '%')))",
+           countQuery = "SELECT COUNT(u) FROM User u WHERE " +
            "(:username IS NULL OR LOWER(u.username) LIKE LOWER(CONCAT('%', :username, '%'))) AND " +
            "(:email IS NULL OR LOWER(u.email) LIKE LOWER(CONCAT('%', :email, '%'))) AND " +
            "(:firstName IS NULL OR LOWER(u.firstName) LIKE LOWER(CONCAT('%', :firstName, '%'))) AND " +
            "(:lastName IS NULL OR LOWER(u.lastName) LIKE LOWER(CONCAT('%', :lastName, '%')))")
-    Page<User> findByFilters(@Param("username") String username,
-                             @Param("email") String email,
-                             @Param("firstName") String firstName,
-                             @Param("lastName") String lastName,
-                             Pageable pageable);
+    Page<UserDto> findByFilters(@Param("username") String username,
+                                @Param("email") String email,
+                                @Param("firstName") String firstName,
+                                @Param("lastName") String lastName,
+                                Pageable pageable);
+    
+    @Query("SELECT u.username AS username, u.role AS role, u.isActive AS active FROM User u WHERE u.id = :id")
+    Optional<UserState> findStateById(@Param("id") Long id);
+    
+    // Guarded by the old hash so a password changed in the meantime is not overwritten
+    @Modifying
+    @Query("UPDATE User u SET u.password = :newPassword WHERE u.id = :id AND u.password = :oldPassword")
+    int updatePasswordIfUnchanged(@Param("id") Long id,
+                                  @Param("oldPassword") String oldPassword,
+                                  @Param("newPassword") String newPassword);
+    
+    interface UserState {
+        String getUsername();
+        
+        User.Role getRole();
+        
+        boolean isActive();
+    }
 }
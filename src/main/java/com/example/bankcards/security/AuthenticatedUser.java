@@ -0,0 +1,58 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.entity.User;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.security.Principal;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Principal of an authenticated request. Built from verified JWT claims, so
+ * controllers get the caller's id and role without loading the User entity.
+ */
+public final class AuthenticatedUser implements Principal {
+    
+    private final Long id;
+    
+    private final String username;
+    
+    private final User.Role role;
+    
+    public AuthenticatedUser(Long id, String username, User.Role role) {
+        this.id = id;
+        this.username = username;
+        this.role = role;
+    }
+    
+    public static AuthenticatedUser from(User user) {
+        return new AuthenticatedUser(user.getId(), user.getUsername(), user.getRole());
+    }
+    
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return List.of(new SimpleGrantedAuthority("ROLE_" + role.name()));
+    }
+    
+    @Override
+    public String getName() {
+        return username;
+    }
+    
+    public Long getId() {
+        return id;
+    }
+    
+    public String getUsername() {
+        return username;
+    }
+    
+    public User.Role getRole() {
+        return role;
+    }
+    
+    @Override
+    public String toString() {
+        return username;
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.exception.TooManyRequestsException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-username and per-client-IP token buckets for login attempts. Buckets live in a
+ * size-bounded cache and are updated with a single compare-and-set, so throttling a
+ * login storm takes no locks and no database access.
+ */
+@Component
+public class LoginRateLimiter {
+    
+    private final Cache<String, TokenBucket> buckets;
+    
+    private final int usernameCapacity;
+    
+    private final long usernameNanosPerToken;
+    
+    private final int ipCapacity;
+    
+    private final long ipNanosPerToken;
+    
+    public LoginRateLimiter(@Value("${bank.auth.rate-limit.username.capacity:5}") int usernameCapacity,
+                            @Value("${bank.auth.rate-limit.username.per-minute:5}") int usernamePerMinute,
+                            @Value("${bank.auth.rate-limit.ip.capacity:30}") int ipCapacity,
+                            @Value("${bank.auth.rate-limit.ip.per-minute:30}") int ipPerMinute,
+                            @Value("${bank.auth.rate-limit.max-tracked-keys:100000}") long maxTrackedKeys) {
+        this.usernameCapacity = usernameCapacity;
+        this.usernameNanosPerToken = TimeUnit.MINUTES.toNanos(1) / usernamePerMinute;
+        this.ipCapacity = ipCapacity;
+        this.ipNanosPerToken = TimeUnit.MINUTES.toNanos(1) / ipPerMinute;
+        // An idle bucket is full again after capacity * nanosPerToken, so dropping it then loses nothing
+        long fullRefillNanos = Math.max(usernameCapacity * usernameNanosPerToken, ipCapacity * ipNanosPerToken);
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxTrackedKeys)
+                .expireAfterAccess(Duration.ofNanos(fullRefillNanos))
+                .build();
+    }
+    
+    /**
+     * Takes one token from the client's IP bucket and one from the username's bucket.
+     *
+     * @throws TooManyRequestsException if either bucket is empty
+     */
+    public void acquire(String username, String clientIp) {
+        acquire("ip:" + clientIp, ipCapacity, ipNanosPerToken);
+        acquire("user:" + username.toLowerCase(Locale.ROOT), usernameCapacity, usernameNanosPerToken);
+    }
+    
+    private void acquire(String key, int capacity, long nanosPerToken) {
+        TokenBucket bucket = buckets.get(key, k -> new TokenBucket(capacity, nanosPerToken));
+        long waitNanos = bucket.tryConsume(System.nanoTime());
+        if (waitNanos > 0) {
+            throw new TooManyRequestsException("Too many login attempts, please try again later",
+                    Duration.ofNanos(waitNanos));
+        }
+    }
+    
+    /**
+     * Token bucket kept as the time at which it will be full again (the GCRA formulation),
+     * which fits in one AtomicLong.
+     */
+    static final class TokenBucket {
+    
+        private final long nanosPerToken;
+    
+        private final long burstNanos;
+    
+        private final AtomicLong fullAt;
+    
+        TokenBucket(int capacity, long nanosPerToken) {
+            this.nanosPerToken = nanosPerToken;
+            this.burstNanos = capacity * nanosPerToken;
+            this.fullAt = new AtomicLong(System.nanoTime() - burstNanos);
+        }
+    
+        /**
+         * @return 0 if a token was taken, otherwise the nanoseconds until one becomes available
+         */
+        long tryConsume(long now) {
+            while (true) {
+                long current = fullAt.get();
+                long next = Math.max(current, now) + nanosPerToken;
+                long overflow = next - now - burstNanos;
+                if (overflow > 0) {
+                    return overflow;
+                }
+                if (fullAt.compareAndSet(current, next)) {
+                    return 0;
+                }
+            }
+        }
+    }
+}
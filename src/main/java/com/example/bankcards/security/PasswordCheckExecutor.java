@@ -0,0 +1,95 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.exception.TooManyRequestsException;
+import com.example.bankcards.util.EncryptionUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs BCrypt password checks on a small dedicated pool instead of the request thread.
+ * The pool matches the CPU count, since hashing is CPU-bound. The queue is bounded, so a
+ * login storm is shed with 429 responses instead of occupying every web worker.
+ */
+@Component
+public class PasswordCheckExecutor {
+    
+    private static final Duration BUSY_RETRY_AFTER = Duration.ofSeconds(1);
+    
+    private final EncryptionUtil encryptionUtil;
+    
+    private final ThreadPoolExecutor executor;
+    
+    private final Timer hashTimer;
+    
+    private final Counter rejectedCounter;
+    
+    public PasswordCheckExecutor(EncryptionUtil encryptionUtil,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${bank.auth.password-check.threads:0}") int threads,
+                                 @Value("${bank.auth.password-check.queue-capacity:64}") int queueCapacity) {
+        this.encryptionUtil = encryptionUtil;
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new CustomizableThreadFactory("password-check-"),
+                new ThreadPoolExecutor.AbortPolicy());
+    
+        // executor.queued, executor.active, executor.pool.size, executor.completed
+        new ExecutorServiceMetrics(executor, "passwordCheck", Tags.empty()).bindTo(meterRegistry);
+        this.hashTimer = Timer.builder("auth.password.hash")
+                .description("Time spent computing BCrypt hashes for login")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("auth.password.rejected")
+                .description("Password hashes rejected because the pool and queue were full")
+                .register(meterRegistry);
+    }
+    
+    public boolean matches(String rawPassword, String encodedPassword) {
+        return run(() -> encryptionUtil.matchesPassword(rawPassword, encodedPassword));
+    }
+    
+    public String encode(String rawPassword) {
+        return run(() -> encryptionUtil.encryptPassword(rawPassword));
+    }
+    
+    private <T> T run(Callable<T> task) {
+        Future<T> result;
+        try {
+            result = executor.submit(() -> hashTimer.recordCallable(task));
+        } catch (RejectedExecutionException e) {
+            rejectedCounter.increment();
+            throw new TooManyRequestsException("Login service is busy, please try again later", BUSY_RETRY_AFTER);
+        }
+    
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while hashing password", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+    }
+    
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
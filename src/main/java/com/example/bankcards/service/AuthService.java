@@ -4,7 +4,10 @@ import com.example.bankcards.dto.AuthResponse;
 import com.example.bankcards.dto.LoginRequest;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.exception.BusinessException;
+import com.example.bankcards.exception.TooManyRequestsException;
 import com.example.bankcards.exception.UnauthorizedException;
+import com.example.bankcards.security.LoginRateLimiter;
+import com.example.bankcards.security.PasswordCheckExecutor;
 import com.example.bankcards.util.EncryptionUtil;
 import com.example.bankcards.util.JwtUtil;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -22,6 +25,12 @@ public class AuthService implements UserDetailsService {
     @Autowired
     private EncryptionUtil encryptionUtil;
     
+    @Autowired
+    private PasswordCheckExecutor passwordCheckExecutor;
+    
+    @Autowired
+    private LoginRateLimiter loginRateLimiter;
+    
     @Autowired
     private JwtUtil jwtUtil;
     
@@ -34,7 +43,8 @@ public class AuthService implements UserDetailsService {
         }
     }
     
-    public AuthResponse authenticate(LoginRequest loginRequest) {
+    public AuthResponse authenticate(LoginRequest loginRequest, String clientIp) {
+        loginRateLimiter.acquire(loginRequest.getUsername(), clientIp);
         try {
             User user = userService.findUserEntityByUsername(loginRequest.getUsername());
             
@@ -42,21 +52,33 @@ public class AuthService implements UserDetailsService {
                 throw new UnauthorizedException("Account is deactivated");
             }
             
-            if (!encryptionUtil.matchesPassword(loginRequest.getPassword(), user.getPassword())) {
+            if (!passwordCheckExecutor.matches(loginRequest.getPassword(), user.getPassword())) {
                 throw new UnauthorizedException("Invalid credentials");
             }
             
-            String token = jwtUtil.generateToken(user.getUsername(), user.getRole().name());
+            if (encryptionUtil.needsRehash(user.getPassword())) {
+                rehashPassword(user, loginRequest.getPassword());
+            }
+            
+            String token = jwtUtil.generateToken(user.getId(), user.getUsername(), user.getRole().name());
             
             return new AuthResponse(token, user.getUsername(), user.getRole().name());
         } catch (Exception e) {
-            if (e instanceof UnauthorizedException) {
+            if (e instanceof UnauthorizedException || e instanceof TooManyRequestsException) {
                 throw e;
             }
             throw new UnauthorizedException("Authentication failed");
         }
     }
     
+    private void rehashPassword(User user, String rawPassword) {
+        try {
+            userService.rehashPassword(user, passwordCheckExecutor.encode(rawPassword));
+        } catch (RuntimeException e) {
+            // The login itself succeeded; the stored hash is upgraded on a later login
+        }
+    }
+    
     public boolean validateToken(String token) {
         return jwtUtil.validateToken(token);
     }
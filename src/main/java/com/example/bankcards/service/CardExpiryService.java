@@ -0,0 +1,83 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.repository.CardRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Marks cards past their expiry date as EXPIRED, one chunk per short transaction.
+ * The scheduled run holds the "card-expiry" lease and renews it with every chunk.
+ */
+@Service
+public class CardExpiryService {
+    
+    private static final Logger log = LoggerFactory.getLogger(CardExpiryService.class);
+    
+    private final CardRepository cardRepository;
+    
+    private final JobLockService jobLockService;
+    
+    private final TransactionTemplate transactionTemplate;
+    
+    private final int chunkSize;
+    
+    private final Counter expiredCounter;
+    
+    public CardExpiryService(CardRepository cardRepository,
+                             JobLockService jobLockService,
+                             TransactionTemplate transactionTemplate,
+                             MeterRegistry meterRegistry,
+                             @Value("${bank.cards.expiry.chunk-size:1000}") int chunkSize) {
+        this.cardRepository = cardRepository;
+        this.jobLockService = jobLockService;
+        this.transactionTemplate = transactionTemplate;
+        this.chunkSize = chunkSize;
+        this.expiredCounter = Counter.builder("cards.expired")
+                .description("Cards marked as expired by the expiry job")
+                .register(meterRegistry);
+    }
+    
+    @Scheduled(cron = "${bank.cards.expiry.cron:0 5 * * * *}")
+    @JobLease(name = "card-expiry", leaseTime = "${bank.cards.expiry.lease-time:PT1M}")
+    public void updateExpiredCardsInBackground() {
+        updateExpiredCards();
+    }
+    
+    /**
+     * @return the number of cards marked as expired
+     */
+    public int updateExpiredCards() {
+        LocalDate today = LocalDate.now();
+        int expired = 0;
+        while (true) {
+            int chunk = transactionTemplate.execute(status -> expireChunk(today));
+            if (chunk == 0) {
+                return expired;
+            }
+            expired += chunk;
+            log.info("Expired {} cards in chunk ({} so far)", chunk, expired);
+        }
+    }
+    
+    private int expireChunk(LocalDate today) {
+        jobLockService.checkpoint();
+        List<Long> ids = cardRepository.findIdsToExpire(today, PageRequest.ofSize(chunkSize));
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        int expired = cardRepository.expireCards(ids, today, LocalDateTime.now());
+        expiredCounter.increment(expired);
+        return expired;
+    }
+}
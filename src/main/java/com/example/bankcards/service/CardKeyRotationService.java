@@ -0,0 +1,151 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.CardKeyRotation;
+import com.example.bankcards.repository.CardKeyRotationRepository;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.util.EncryptionUtil;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Re-encrypts card numbers still stored under an older key version with the active key.
+ * Walks the cards table in id order, one chunk per short transaction written as a single
+ * JDBC batch, and records the highest id below which every card was rewritten, so a
+ * restart resumes from there. The job sleeps between chunks to stay within the configured
+ * rows-per-second budget.
+ */
+@Service
+public class CardKeyRotationService {
+    
+    private static final String SELECT_CHUNK =
+            "SELECT id, card_number, key_version FROM cards " +
+            "WHERE id > ? AND key_version <> ? AND card_number_hash IS NOT NULL " +
+            "ORDER BY id LIMIT ?";
+    
+    // Guarded by the old ciphertext, so a row changed since it was read is left for the next run.
+    // Bumps version, so saving a Card loaded before the rewrite fails instead of restoring the old ciphertext.
+    private static final String UPDATE_CARD_NUMBER =
+            "UPDATE cards SET card_number = ?, key_version = ?, version = version + 1 WHERE id = ? AND card_number = ?";
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private EncryptionUtil encryptionUtil;
+    
+    @Autowired
+    private CardKeyRotationRepository cardKeyRotationRepository;
+    
+    @Autowired
+    private CardRepository cardRepository;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Autowired
+    private JobLockService jobLockService;
+    
+    @Value("${bank.card-encryption.rotation.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${bank.card-encryption.rotation.chunk-size:200}")
+    private int chunkSize;
+    
+    @Value("${bank.card-encryption.rotation.rows-per-second:500}")
+    private int rowsPerSecond;
+    
+    @Scheduled(initialDelayString = "${bank.card-encryption.rotation.interval:PT5M}",
+               fixedDelayString = "${bank.card-encryption.rotation.interval:PT5M}")
+    @JobLease(name = "card-key-rotation", leaseTime = "${bank.card-encryption.rotation.lease-time:PT1M}")
+    public void rotateInBackground() {
+        if (enabled) {
+            rotate();
+        }
+    }
+    
+    /**
+     * @return the number of cards re-encrypted under the active key
+     */
+    public int rotate() {
+        int targetVersion = encryptionUtil.getActiveKeyVersion();
+        long checkpoint = cardKeyRotationRepository.findById(targetVersion)
+                .map(CardKeyRotation::getLastCardId)
+                .orElse(0L);
+        long afterId = checkpoint;
+        long nanosPerRow = TimeUnit.SECONDS.toNanos(1) / rowsPerSecond;
+        int rotated = 0;
+        
+        while (!Thread.currentThread().isInterrupted()) {
+            long started = System.nanoTime();
+            List<StoredCard> chunk = jdbcTemplate.query(SELECT_CHUNK,
+                    (rs, rowNum) -> new StoredCard(rs.getLong("id"), rs.getString("card_number"), rs.getInt("key_version")),
+                    afterId, targetVersion, chunkSize);
+            if (chunk.isEmpty()) {
+                break;
+            }
+            
+            // Once a card was skipped, the checkpoint stays in front of it for the rest of the run
+            long from = checkpoint;
+            boolean advance = checkpoint == afterId;
+            RotatedChunk result = transactionTemplate.execute(status -> reencrypt(chunk, targetVersion, from, advance));
+            rotated += result.rotated();
+            checkpoint = result.checkpoint();
+            afterId = chunk.get(chunk.size() - 1).id();
+            
+            throttle(chunk.size() * nanosPerRow - (System.nanoTime() - started));
+        }
+        return rotated;
+    }
+    
+    private RotatedChunk reencrypt(List<StoredCard> chunk, int targetVersion, long checkpoint, boolean advance) {
+        jobLockService.checkpoint();
+        List<Object[]> batch = chunk.stream()
+                .map(card -> new Object[] {
+                        encryptionUtil.encryptCardNumber(encryptionUtil.decryptCardNumber(card.cardNumber(), card.keyVersion())),
+                        targetVersion,
+                        card.id(),
+                        card.cardNumber()})
+                .toList();
+        int[] updated = jdbcTemplate.batchUpdate(UPDATE_CARD_NUMBER, batch);
+        // Plain JDBC bypasses Hibernate, so drop the rewritten cards from the second-level cache
+        chunk.forEach(card -> cardRepository.evictFromCache(card.id()));
+        
+        int rotated = 0;
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] > 0 || updated[i] == Statement.SUCCESS_NO_INFO) {
+                rotated++;
+            } else {
+                // Changed since it was read; the next run has to come back for it
+                advance = false;
+            }
+            if (advance) {
+                checkpoint = chunk.get(i).id();
+            }
+        }
+        cardKeyRotationRepository.save(new CardKeyRotation(targetVersion, checkpoint));
+        return new RotatedChunk(rotated, checkpoint);
+    }
+    
+    private void throttle(long remainingNanos) {
+        if (remainingNanos <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(remainingNanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private record StoredCard(long id, String cardNumber, int keyVersion) {}
+    
+    private record RotatedChunk(int rotated, long checkpoint) {}
+}
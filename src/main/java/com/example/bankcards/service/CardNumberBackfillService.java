@@ -0,0 +1,75 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.CardRepository.StoredCardNumber;
+import com.example.bankcards.util.EncryptionUtil;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Re-encrypts card rows written before AES-GCM and fills in their blind index and last4.
+ * Runs at startup in short chunked transactions; once every row has both it finds
+ * nothing to do.
+ */
+@Service
+public class CardNumberBackfillService implements ApplicationRunner {
+    
+    @Autowired
+    private CardRepository cardRepository;
+    
+    @Autowired
+    private EncryptionUtil encryptionUtil;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Value("${bank.card-encryption.backfill-chunk-size:500}")
+    private int chunkSize;
+    
+    @Override
+    public void run(ApplicationArguments args) {
+        backfill();
+    }
+    
+    public int backfill() {
+        int updated = 0;
+        long afterId = 0;
+        while (true) {
+            List<StoredCardNumber> chunk = cardRepository.findCardNumbersToBackfill(afterId, PageRequest.of(0, chunkSize));
+            if (chunk.isEmpty()) {
+                return updated;
+            }
+            updated += transactionTemplate.execute(status -> chunk.stream()
+                    .mapToInt(this::reencrypt)
+                    .sum());
+            afterId = chunk.get(chunk.size() - 1).getId();
+        }
+    }
+    
+    private int reencrypt(StoredCardNumber row) {
+        if (encryptionUtil.isLegacyCardNumber(row.getCardNumber())) {
+            String cardNumber = encryptionUtil.decryptCardNumber(row.getCardNumber(), row.getKeyVersion());
+            return cardRepository.updateCardNumber(row.getId(), row.getCardNumber(),
+                    encryptionUtil.encryptCardNumber(cardNumber), encryptionUtil.getActiveKeyVersion(),
+                    encryptionUtil.hashCardNumber(cardNumber), last4(cardNumber));
+        }
+        // Already AES-GCM, written before last4 existed
+        if (row.getCardNumberHash() != null) {
+            String cardNumber = encryptionUtil.decryptCardNumber(row.getCardNumber(), row.getKeyVersion());
+            return cardRepository.updateLast4(row.getId(), last4(cardNumber));
+        }
+        // Anything else was not written by this application; leave it alone
+        return 0;
+    }
+    
+    private static String last4(String cardNumber) {
+        return cardNumber.substring(cardNumber.length() - 4);
+    }
+}
@@ -1,6 +1,9 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.config.ConnectionPool;
+import com.example.bankcards.config.UseConnectionPool;
 import com.example.bankcards.dto.CardDto;
+import com.example.bankcards.dto.CardNumberResponse;
 import com.example.bankcards.dto.CreateCardRequest;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.User;
@@ -8,21 +11,33 @@ import com.example.bankcards.exception.BusinessException;
 import com.example.bankcards.exception.ResourceNotFoundException;
 import com.example.bankcards.exception.UnauthorizedException;
 import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.ListVersion;
+import com.example.bankcards.util.ETags;
 import com.example.bankcards.util.EncryptionUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
 @Transactional
 public class CardService {
     
+    private static final Logger auditLog = LoggerFactory.getLogger("AUDIT");
+    
     @Autowired
     private CardRepository cardRepository;
     
@@ -33,7 +48,8 @@ public class CardService {
     private EncryptionUtil encryptionUtil;
     
     public CardDto createCard(CreateCardRequest request) {
-        if (cardRepository.existsByCardNumber(request.getCardNumber())) {
+        String cardNumberHash = encryptionUtil.hashCardNumber(request.getCardNumber());
+        if (cardRepository.existsByCardNumberHash(cardNumberHash)) {
             throw new BusinessException("Card number already exists");
         }
         
@@ -41,57 +57,115 @@ public class CardService {
         
         Card card = new Card();
         card.setCardNumber(encryptionUtil.encryptCardNumber(request.getCardNumber()));
+        card.setKeyVersion(encryptionUtil.getActiveKeyVersion());
+        card.setCardNumberHash(cardNumberHash);
+        card.setLast4(request.getCardNumber().substring(request.getCardNumber().length() - 4));
         card.setCardHolder(request.getCardHolder());
         card.setExpiryDate(request.getExpiryDate());
         card.setOwner(owner);
         
-        Card savedCard = cardRepository.save(card);
+        Card savedCard;
+        try {
+            savedCard = cardRepository.saveAndFlush(card);
+        } catch (DataIntegrityViolationException e) {
+            // Lost a race with a concurrent request for the same number
+            throw new BusinessException("Card number already exists");
+        }
         return convertToDto(savedCard);
     }
     
     @Transactional(readOnly = true)
     public CardDto getCardById(Long id) {
-        Card card = cardRepository.findById(id)
+        CardDto card = cardRepository.findDtoById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Card not found with id: " + id));
-        return convertToDto(card);
+        return card;
     }
     
     @Transactional(readOnly = true)
     public CardDto getCardByIdForUser(Long id, String username) {
-        Card card = cardRepository.findById(id)
+        CardDto card = cardRepository.findDtoById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Card not found with id: " + id));
         
-        if (!card.getOwner().getUsername().equals(username)) {
+        if (!card.getOwnerUsername().equals(username)) {
             throw new UnauthorizedException("You can only access your own cards");
         }
         
-        return convertToDto(card);
+        return card;
+    }
+    
+    /**
+     * ETag of a single card, from its version and owner. Applies the same access check as
+     * getCardByIdForUser, so a 304 is never answered for somebody else's card.
+     */
+    @Transactional(readOnly = true)
+    public String getCardETag(Long id, String username, boolean isAdmin) {
+        CardRepository.CardVersion version = cardRepository.findVersionById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Card not found with id: " + id));
+        
+        if (!isAdmin && !version.getOwnerUsername().equals(username)) {
+            throw new UnauthorizedException("You can only access your own cards");
+        }
+        
+        return ETags.of("card", id, version.getVersion(), version.getOwnerUsername());
+    }
+    
+    @Transactional(readOnly = true)
+    public String getCardsETagForUser(String username, Card.CardStatus status, String cardHolder, Pageable pageable) {
+        User user = userService.findUserEntityByUsername(username);
+        ListVersion version = cardRepository.findListVersionByOwnerAndFilters(user.getId(), status, cardHolder);
+        // Each filter and page is its own representation, so they are part of the tag
+        return ETags.of("cards", username, status, cardHolder, pageable,
+                version.getLastUpdated(), version.getCount());
+    }
+    
+    @Transactional(readOnly = true)
+    @UseConnectionPool(ConnectionPool.REPORTING)
+    public String getAllCardsETag(Card.CardStatus status, String cardHolder, String ownerUsername, Pageable pageable) {
+        ListVersion version = cardRepository.findListVersionByFilters(status, cardHolder, ownerUsername);
+        return ETags.of("cards", status, cardHolder, ownerUsername, pageable,
+                version.getLastUpdated(), version.getCount());
     }
     
     @Transactional(readOnly = true)
     public Page<CardDto> getCardsByUser(String username, Pageable pageable) {
         User user = userService.findUserEntityByUsername(username);
-        return cardRepository.findByOwner(user, pageable)
-                .map(this::convertToDto);
+        return cardRepository.findByOwnerId(user.getId(), pageable);
     }
     
     @Transactional(readOnly = true)
     public Page<CardDto> searchCardsByUser(String username, Card.CardStatus status, String cardHolder, Pageable pageable) {
         User user = userService.findUserEntityByUsername(username);
-        return cardRepository.findByOwnerAndFilters(user, status, cardHolder, pageable)
-                .map(this::convertToDto);
+        return cardRepository.findByOwnerAndFilters(user.getId(), status, cardHolder, pageable);
     }
     
     @Transactional(readOnly = true)
+    @UseConnectionPool(ConnectionPool.REPORTING)
     public Page<CardDto> getAllCards(Pageable pageable) {
-        return cardRepository.findAll(pageable)
-                .map(this::convertToDto);
+        return cardRepository.findAllDtos(pageable);
     }
     
     @Transactional(readOnly = true)
+    @UseConnectionPool(ConnectionPool.REPORTING)
     public Page<CardDto> searchAllCards(Card.CardStatus status, String cardHolder, String ownerUsername, Pageable pageable) {
-        return cardRepository.findByFilters(status, cardHolder, ownerUsername, pageable)
-                .map(this::convertToDto);
+        return cardRepository.findByFilters(status, cardHolder, ownerUsername, pageable);
+    }
+    
+    /**
+     * The only place a full card number leaves the service. Every call is written to the audit log,
+     * including refused ones.
+     */
+    @Transactional(readOnly = true)
+    public CardNumberResponse revealCardNumber(Long id, String username, boolean isAdmin) {
+        Card card = cardRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Card not found with id: " + id));
+        
+        if (!isAdmin && !card.getOwner().getUsername().equals(username)) {
+            auditLog.warn("Card number reveal refused: cardId={} user={}", id, username);
+            throw new UnauthorizedException("You can only access your own cards");
+        }
+        
+        auditLog.info("Card number revealed: cardId={} user={} admin={}", id, username, isAdmin);
+        return new CardNumberResponse(card.getId(), encryptionUtil.decryptCardNumber(card.getCardNumber(), card.getKeyVersion()));
     }
     
     public CardDto updateCardStatus(Long id, Card.CardStatus status) {
@@ -140,20 +214,53 @@ public class CardService {
         cardRepository.delete(card);
     }
     
-    public void updateExpiredCards() {
-        List<Card> expiredCards = cardRepository.findExpiredCards(LocalDate.now());
-        for (Card card : expiredCards) {
-            card.setStatus(Card.CardStatus.EXPIRED);
-            cardRepository.save(card);
-        }
-    }
-    
     @Transactional(readOnly = true)
     public Card findCardEntityById(Long id) {
         return cardRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Card not found with id: " + id));
     }
     
+    public Card getCardReference(Long id) {
+        return cardRepository.getReferenceById(id);
+    }
+    
+    @Transactional(readOnly = true)
+    public Map<Long, Card> findCardEntitiesWithOwner(Set<Long> ids) {
+        return requireAll(ids, cardRepository.findAllWithOwnerByIdIn(ids));
+    }
+    
+    @Transactional(readOnly = true)
+    public Map<Long, Long> findOwnerIdsByCardIds(Set<Long> ids) {
+        return cardRepository.findOwnershipByIdIn(ids).stream()
+                .collect(Collectors.toMap(CardRepository.CardOwnership::getId, CardRepository.CardOwnership::getOwnerId));
+    }
+    
+    public Map<Long, Card> lockCardEntitiesByIds(Set<Long> ids) {
+        return cardRepository.findAllByIdForUpdate(ids).stream()
+                .collect(Collectors.toMap(Card::getId, Function.identity()));
+    }
+    
+    private Map<Long, Card> requireAll(Set<Long> ids, List<Card> found) {
+        Map<Long, Card> cards = found.stream()
+                .collect(Collectors.toMap(Card::getId, Function.identity()));
+        
+        for (Long id : ids) {
+            if (!cards.containsKey(id)) {
+                throw new ResourceNotFoundException("Card not found with id: " + id);
+            }
+        }
+        
+        return cards;
+    }
+    
+    public boolean debitIfSufficient(Long id, BigDecimal amount) {
+        return cardRepository.debitIfSufficient(id, amount, LocalDate.now(), LocalDateTime.now()) == 1;
+    }
+    
+    public boolean creditIfActive(Long id, BigDecimal amount) {
+        return cardRepository.creditIfActive(id, amount, LocalDate.now(), LocalDateTime.now()) == 1;
+    }
+    
     @Transactional(readOnly = true)
     public List<Card> getActiveCardsByUser(String username) {
         User user = userService.findUserEntityByUsername(username);
@@ -161,13 +268,12 @@ public class CardService {
     }
     
     private CardDto convertToDto(Card card) {
-        String decryptedCardNumber = encryptionUtil.decryptCardNumber(card.getCardNumber());
         return new CardDto(
                 card.getId(),
-                decryptedCardNumber,
+                card.getLast4(),
                 card.getCardHolder(),
                 card.getExpiryDate(),
-                card.getStatus().name(),
+                card.getStatus(),
                 card.getBalance(),
                 card.getOwner().getId(),
                 card.getOwner().getUsername()
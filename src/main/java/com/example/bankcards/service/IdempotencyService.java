@@ -0,0 +1,49 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.TransactionDto;
+import com.example.bankcards.exception.BusinessException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+
+/**
+ * Short-lived, size-bounded memory of recently completed idempotent requests. The
+ * transactions table (unique user_id + idempotency_key) stays the source of truth;
+ * this cache only lets hot retries be answered without touching the database.
+ */
+@Service
+public class IdempotencyService {
+    
+    public static final int MAX_KEY_LENGTH = 64;
+    
+    private final Cache<String, TransactionDto> recentTransfers;
+    
+    public IdempotencyService(@Value("${bank.idempotency.cache-size:10000}") long cacheSize,
+                              @Value("${bank.idempotency.cache-ttl:PT1H}") Duration cacheTtl) {
+        this.recentTransfers = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(cacheTtl)
+                .build();
+    }
+    
+    public void validateKey(String idempotencyKey) {
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new BusinessException("Idempotency-Key must be between 1 and " + MAX_KEY_LENGTH + " characters");
+        }
+    }
+    
+    public TransactionDto getRecent(Long userId, String idempotencyKey) {
+        return recentTransfers.getIfPresent(cacheKey(userId, idempotencyKey));
+    }
+    
+    public void remember(Long userId, String idempotencyKey, TransactionDto transaction) {
+        recentTransfers.put(cacheKey(userId, idempotencyKey), transaction);
+    }
+    
+    private String cacheKey(Long userId, String idempotencyKey) {
+        return userId + ":" + idempotencyKey;
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.bankcards.service;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Runs a void method, typically a @Scheduled job, only on the node holding the named lease.
+ * Other nodes skip the call. A node that dies stops renewing, and another node takes the
+ * job over once leaseTime has passed. Long jobs keep the lease by calling
+ * {@link JobLockService#checkpoint()} in each unit of work.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface JobLease {
+    
+    String name();
+    
+    /**
+     * ISO-8601 duration; property placeholders are resolved.
+     */
+    String leaseTime() default "PT1M";
+}
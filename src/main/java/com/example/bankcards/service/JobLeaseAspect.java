@@ -0,0 +1,53 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.exception.LeaseLostException;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.EmbeddedValueResolverAware;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringValueResolver;
+
+import java.time.Duration;
+import java.util.Optional;
+
+@Aspect
+@Component
+public class JobLeaseAspect implements EmbeddedValueResolverAware {
+    
+    private static final Logger log = LoggerFactory.getLogger(JobLeaseAspect.class);
+    
+    @Autowired
+    private JobLockService jobLockService;
+    
+    private StringValueResolver valueResolver;
+    
+    @Override
+    public void setEmbeddedValueResolver(StringValueResolver resolver) {
+        this.valueResolver = resolver;
+    }
+    
+    @Around("@annotation(jobLease)")
+    public Object runUnderLease(ProceedingJoinPoint joinPoint, JobLease jobLease) throws Throwable {
+        Duration leaseTime = Duration.parse(valueResolver.resolveStringValue(jobLease.leaseTime()));
+        Optional<JobLockService.Lease> lease = jobLockService.tryAcquire(jobLease.name(), leaseTime);
+        if (lease.isEmpty()) {
+            log.debug("Skipping {}: lease {} is held by another node", joinPoint.getSignature(), jobLease.name());
+            return null;
+        }
+        
+        jobLockService.bind(lease.get());
+        try {
+            return joinPoint.proceed();
+        } catch (LeaseLostException e) {
+            log.warn("Stopping {}: {}", joinPoint.getSignature(), e.getMessage());
+            return null;
+        } finally {
+            jobLockService.unbind();
+            jobLockService.release(lease.get());
+        }
+    }
+}
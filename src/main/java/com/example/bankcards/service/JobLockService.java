@@ -0,0 +1,125 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.exception.LeaseLostException;
+import com.example.bankcards.repository.JobLockRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Leases on the job_locks table. Acquire, renew and release are each one conditional
+ * UPDATE, so no database lock is held while a job runs. Every acquisition bumps the
+ * row's fencing token, and renewals only succeed with the current token, so a node that
+ * stalled past its lease finds out at its next checkpoint instead of writing alongside
+ * the new holder. Expiry is judged by each node's clock; leases should be much longer
+ * than the expected clock skew.
+ */
+@Service
+public class JobLockService {
+    
+    // pid@host plus a random suffix, so two contexts in one JVM are different owners
+    private final String owner = ManagementFactory.getRuntimeMXBean().getName() + ":" + UUID.randomUUID();
+    
+    private final ThreadLocal<Lease> currentLease = new ThreadLocal<>();
+    
+    @Autowired
+    private JobLockRepository jobLockRepository;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    public Optional<Lease> tryAcquire(String name, Duration leaseTime) {
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            // Checked in a read-write transaction, so the read goes to the primary rather than a lagging replica
+            transactionTemplate.executeWithoutResult(status -> {
+                if (!jobLockRepository.existsById(name)) {
+                    // Created already expired; a second keeps timestamp rounding from making it look held
+                    jobLockRepository.insertIfAbsent(name, now.minusSeconds(1));
+                }
+            });
+        } catch (DataIntegrityViolationException e) {
+            // Another node created the row first
+        }
+        
+        return transactionTemplate.execute(status -> {
+            if (jobLockRepository.tryAcquire(name, owner, now, now.plus(leaseTime)) == 0) {
+                return Optional.empty();
+            }
+            return jobLockRepository.findFencingToken(name)
+                    .map(token -> new Lease(name, token, leaseTime));
+        });
+    }
+    
+    /**
+     * Extends the lease by its lease time. Joins the caller's transaction if there is one.
+     *
+     * @return false if another node has taken the lease over
+     */
+    public boolean renew(Lease lease) {
+        Integer renewed = transactionTemplate.execute(status -> jobLockRepository.renew(
+                lease.getName(), owner, lease.getToken(), LocalDateTime.now().plus(lease.getLeaseTime())));
+        return renewed != null && renewed == 1;
+    }
+    
+    public void release(Lease lease) {
+        transactionTemplate.executeWithoutResult(status ->
+                jobLockRepository.release(lease.getName(), owner, lease.getToken(), LocalDateTime.now()));
+    }
+    
+    /**
+     * Renews the lease the current thread runs under, if any. Call it inside each unit of
+     * work's transaction: the renewal commits together with the work, and if the lease was
+     * lost the work is rolled back.
+     *
+     * @throws LeaseLostException if another node has taken the lease over
+     */
+    public void checkpoint() {
+        Lease lease = currentLease.get();
+        if (lease != null && !renew(lease)) {
+            throw new LeaseLostException("Lease " + lease.getName() + " was taken over by another node");
+        }
+    }
+    
+    void bind(Lease lease) {
+        currentLease.set(lease);
+    }
+    
+    void unbind() {
+        currentLease.remove();
+    }
+    
+    public static final class Lease {
+    
+        private final String name;
+    
+        private final long token;
+    
+        private final Duration leaseTime;
+    
+        Lease(String name, long token, Duration leaseTime) {
+            this.name = name;
+            this.token = token;
+            this.leaseTime = leaseTime;
+        }
+    
+        public String getName() {
+            return name;
+        }
+    
+        public long getToken() {
+            return token;
+        }
+    
+        public Duration getLeaseTime() {
+            return leaseTime;
+        }
+    }
+}
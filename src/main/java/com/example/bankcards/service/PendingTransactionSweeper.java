@@ -0,0 +1,124 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.repository.TransactionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fails transactions left PENDING for longer than the configured timeout. Each chunk is
+ * claimed with SELECT ... FOR UPDATE SKIP LOCKED and marked with one UPDATE in its own
+ * short transaction, so several nodes can sweep at the same time: a row locked by one
+ * node is skipped by the others instead of being processed twice or waited on.
+ */
+@Service
+public class PendingTransactionSweeper {
+    
+    // Served by the partial index idx_transactions_pending_created
+    private static final String CLAIM_CHUNK =
+            "SELECT id FROM transactions WHERE status = 'PENDING' AND created_at < ? " +
+            "ORDER BY created_at LIMIT ? FOR UPDATE SKIP LOCKED";
+    
+    private static final String COUNT_BACKLOG =
+            "SELECT COUNT(*) FROM transactions WHERE status = 'PENDING' AND created_at < ?";
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    private final TransactionRepository transactionRepository;
+    
+    private final TransactionTemplate transactionTemplate;
+    
+    private final boolean enabled;
+    
+    private final Duration pendingTimeout;
+    
+    private final int chunkSize;
+    
+    private final Timer sweepTimer;
+    
+    private final Counter failedCounter;
+    
+    private final AtomicLong backlog = new AtomicLong();
+    
+    private final AtomicLong rowsPerSecond = new AtomicLong();
+    
+    public PendingTransactionSweeper(JdbcTemplate jdbcTemplate,
+                                     TransactionRepository transactionRepository,
+                                     TransactionTemplate transactionTemplate,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${bank.transfer.pending-sweep.enabled:true}") boolean enabled,
+                                     @Value("${bank.transfer.pending-sweep.timeout:PT1H}") Duration pendingTimeout,
+                                     @Value("${bank.transfer.pending-sweep.chunk-size:500}") int chunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionRepository = transactionRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.pendingTimeout = pendingTimeout;
+        this.chunkSize = chunkSize;
+        
+        this.sweepTimer = Timer.builder("transactions.pending.sweep")
+                .description("Duration of a sweep over stale pending transactions")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("transactions.pending.failed")
+                .description("Stale pending transactions marked as failed")
+                .register(meterRegistry);
+        Gauge.builder("transactions.pending.backlog", backlog, AtomicLong::get)
+                .description("Stale pending transactions left after the last sweep on this node")
+                .register(meterRegistry);
+        Gauge.builder("transactions.pending.sweep.throughput", rowsPerSecond, AtomicLong::get)
+                .description("Rows per second marked by the last sweep on this node")
+                .baseUnit("rows/s")
+                .register(meterRegistry);
+    }
+    
+    @Scheduled(initialDelayString = "${bank.transfer.pending-sweep.interval:PT1M}",
+               fixedDelayString = "${bank.transfer.pending-sweep.interval:PT1M}")
+    public void sweepInBackground() {
+        if (enabled) {
+            sweep();
+        }
+    }
+    
+    /**
+     * @return the number of transactions this node marked as failed
+     */
+    public int sweep() {
+        long started = System.nanoTime();
+        LocalDateTime cutoff = LocalDateTime.now().minus(pendingTimeout);
+        int swept = 0;
+        
+        int claimed;
+        do {
+            claimed = transactionTemplate.execute(status -> failChunk(cutoff));
+            swept += claimed;
+        } while (claimed == chunkSize && !Thread.currentThread().isInterrupted());
+        
+        long elapsedNanos = System.nanoTime() - started;
+        sweepTimer.record(elapsedNanos, TimeUnit.NANOSECONDS);
+        failedCounter.increment(swept);
+        rowsPerSecond.set(swept * TimeUnit.SECONDS.toNanos(1) / Math.max(elapsedNanos, 1));
+        backlog.set(jdbcTemplate.queryForObject(COUNT_BACKLOG, Long.class, cutoff));
+        return swept;
+    }
+    
+    private int failChunk(LocalDateTime cutoff) {
+        List<Long> ids = jdbcTemplate.queryForList(CLAIM_CHUNK, Long.class, cutoff, chunkSize);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        transactionRepository.markFailed(ids, LocalDateTime.now());
+        return ids.size();
+    }
+}
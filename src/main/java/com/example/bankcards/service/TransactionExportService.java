@@ -0,0 +1,142 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.ConnectionPool;
+import com.example.bankcards.config.UseConnectionPool;
+import com.example.bankcards.dto.TransactionDto;
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.exception.BusinessException;
+import com.example.bankcards.repository.TransactionRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Writes transaction statements straight from a database cursor to the response body,
+ * so memory use does not depend on the number of exported rows.
+ */
+@Service
+public class TransactionExportService {
+
+    private static final String CSV_HEADER = "id,createdAt,updatedAt,type,status,amount,description," +
+            "fromCardId,fromCardNumber,toCardId,toCardNumber,userId,username";
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    public enum Format {
+        CSV(MediaType.parseMediaType("text/csv"), "csv"),
+        NDJSON(MediaType.parseMediaType("application/x-ndjson"), "ndjson");
+
+        private final MediaType mediaType;
+        private final String extension;
+
+        Format(MediaType mediaType, String extension) {
+            this.mediaType = mediaType;
+            this.extension = extension;
+        }
+
+        public static Format fromParameter(String value) {
+            for (Format format : values()) {
+                if (format.extension.equalsIgnoreCase(value)) {
+                    return format;
+                }
+            }
+            throw new BusinessException("Unsupported export format: " + value);
+        }
+
+        public MediaType getMediaType() {
+            return mediaType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public void exportUserTransactions(Long userId, Transaction.TransactionType type,
+                                       Transaction.TransactionStatus status,
+                                       LocalDateTime fromDate, LocalDateTime toDate,
+                                       Format format, OutputStream out) throws IOException {
+        try (Stream<TransactionDto> rows = transactionRepository.streamByUserAndFilters(userId, type, status, fromDate, toDate)) {
+            write(rows, format, out);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    @UseConnectionPool(ConnectionPool.REPORTING)
+    public void exportAllTransactions(Transaction.TransactionType type, Transaction.TransactionStatus status,
+                                      LocalDateTime fromDate, LocalDateTime toDate, String username,
+                                      Format format, OutputStream out) throws IOException {
+        try (Stream<TransactionDto> rows = transactionRepository.streamByFilters(type, status, fromDate, toDate, username)) {
+            write(rows, format, out);
+        }
+    }
+
+    private void write(Stream<TransactionDto> rows, Format format, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        Iterator<TransactionDto> iterator = rows.iterator();
+
+        if (format == Format.CSV) {
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+            while (iterator.hasNext()) {
+                writeCsvRow(writer, iterator.next());
+            }
+        } else {
+            ObjectWriter jsonWriter = objectMapper.writerFor(TransactionDto.class);
+            while (iterator.hasNext()) {
+                writer.write(jsonWriter.writeValueAsString(iterator.next()));
+                writer.write('\n');
+            }
+        }
+        // Leave the response stream open; the container closes it once the body is complete
+        writer.flush();
+    }
+
+    private void writeCsvRow(Writer writer, TransactionDto transaction) throws IOException {
+        Object[] values = {
+                transaction.getId(), transaction.getCreatedAt(), transaction.getUpdatedAt(),
+                transaction.getType(), transaction.getStatus(), transaction.getAmount(),
+                transaction.getDescription(), transaction.getFromCardId(), transaction.getFromCardNumber(),
+                transaction.getToCardId(), transaction.getToCardNumber(), transaction.getUserId(),
+                transaction.getUsername()
+        };
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            if (values[i] != null) {
+                writer.write(escapeCsv(values[i].toString()));
+            }
+        }
+        writer.write('\n');
+    }
+
+    private String escapeCsv(String value) {
+        // Spreadsheets evaluate cells starting with these as formulas; a leading quote keeps them text
+        if (!value.isEmpty() && "=+-@\t\r".indexOf(value.charAt(0)) >= 0) {
+            return "\"'" + value.replace("\"", "\"\"") + '"';
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
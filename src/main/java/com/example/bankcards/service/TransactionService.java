@@ -1,5 +1,10 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.config.ConnectionPool;
+import com.example.bankcards.config.UseConnectionPool;
+import com.example.bankcards.dto.BatchTransferResponse;
+import com.example.bankcards.dto.BatchTransferResult;
+import com.example.bankcards.dto.CursorPage;
 import com.example.bankcards.dto.TransactionDto;
 import com.example.bankcards.dto.TransferRequest;
 import com.example.bankcards.entity.Card;
@@ -7,22 +12,44 @@ import com.example.bankcards.entity.Transaction;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.exception.BusinessException;
 import com.example.bankcards.exception.ResourceNotFoundException;
+import com.example.bankcards.exception.TransferFailedException;
 import com.example.bankcards.exception.UnauthorizedException;
+import com.example.bankcards.repository.ListVersion;
 import com.example.bankcards.repository.TransactionRepository;
+import com.example.bankcards.util.ETags;
+import com.example.bankcards.util.HistoryCursor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
 
 @Service
 @Transactional
 public class TransactionService {
     
+    private static final long TRANSFER_RETRY_BACKOFF_MS = 20;
+    
+    private static final int MAX_HISTORY_PAGE_SIZE = 100;
+    
     @Autowired
     private TransactionRepository transactionRepository;
     
@@ -32,18 +59,204 @@ public class TransactionService {
     @Autowired
     private UserService userService;
     
-    public TransactionDto transferBetweenCards(TransferRequest request, String username) {
-        User user = userService.findUserEntityByUsername(username);
+    @Autowired
+    private IdempotencyService idempotencyService;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Value("${bank.transfer.max-attempts:3}")
+    private int maxTransferAttempts;
+    
+    @Value("${bank.transfer.batch.chunk-size:500}")
+    private int batchChunkSize;
+    
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @UseConnectionPool(ConnectionPool.TRANSFER)
+    public TransactionDto transferBetweenCards(TransferRequest request, Long userId, String idempotencyKey) {
+        if (idempotencyKey != null) {
+            idempotencyService.validateKey(idempotencyKey);
+            TransactionDto previous = findIdempotentTransfer(userId, idempotencyKey);
+            if (previous != null) {
+                return replay(request, previous);
+            }
+        }
+        
+        TransactionDto result;
+        try {
+            result = executeWithRetry(() -> executeTransfer(request, userId, idempotencyKey));
+        } catch (TransferFailedException e) {
+            // The balance updates were rolled back; keep a record of the failed attempt
+            recordFailedTransfer(request, userId, idempotencyKey, e.getMessage());
+            throw e;
+        } catch (DataIntegrityViolationException e) {
+            // A concurrent request with the same key committed first
+            TransactionDto previous = idempotencyKey != null ? findIdempotentTransfer(userId, idempotencyKey) : null;
+            if (previous == null) {
+                throw e;
+            }
+            return replay(request, previous);
+        }
         
-        Card fromCard = cardService.findCardEntityById(request.getFromCardId());
-        Card toCard = cardService.findCardEntityById(request.getToCardId());
+        if (idempotencyKey != null) {
+            idempotencyService.remember(userId, idempotencyKey, result);
+        }
+        return result;
+    }
+    
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @UseConnectionPool(ConnectionPool.TRANSFER)
+    public BatchTransferResponse transferBatch(List<TransferRequest> transfers, Long userId) {
+        Set<Long> cardIds = new HashSet<>();
+        for (TransferRequest transfer : transfers) {
+            cardIds.add(transfer.getFromCardId());
+            cardIds.add(transfer.getToCardId());
+        }
+        
+        // Validate ownership of every card in the batch with a single query
+        Map<Long, Long> ownerIds = cardService.findOwnerIdsByCardIds(cardIds);
+        if (ownerIds.values().stream().anyMatch(ownerId -> !ownerId.equals(userId))) {
+            throw new UnauthorizedException("You can only transfer between your own cards");
+        }
+        
+        // Chunks are applied one after another and items within a chunk in request order,
+        // so transfers touching the same card keep their relative order
+        List<BatchTransferResult> results = new ArrayList<>(transfers.size());
+        for (int start = 0; start < transfers.size(); start += batchChunkSize) {
+            int chunkStart = start;
+            List<TransferRequest> chunk = transfers.subList(start, Math.min(start + batchChunkSize, transfers.size()));
+            results.addAll(executeWithRetry(() -> executeTransferChunk(chunk, chunkStart, userId)));
+        }
+        
+        return new BatchTransferResponse(results);
+    }
+    
+    private <T> T executeWithRetry(Supplier<T> work) {
+        // Each attempt runs in its own transaction, so a lock conflict can be retried from scratch.
+        // A lock wait cut short by the transfer pool's statement timeout is treated the same way.
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> work.get());
+            } catch (ConcurrencyFailureException | QueryTimeoutException e) {
+                if (attempt >= maxTransferAttempts) {
+                    throw new BusinessException("Transfer could not be completed because of concurrent updates, please retry", e);
+                }
+                backOff(attempt);
+            }
+        }
+    }
+    
+    private List<BatchTransferResult> executeTransferChunk(List<TransferRequest> chunk, int offset, Long userId) {
+        Set<Long> cardIds = new HashSet<>();
+        for (TransferRequest transfer : chunk) {
+            cardIds.add(transfer.getFromCardId());
+            cardIds.add(transfer.getToCardId());
+        }
+        
+        // Lock every card of the chunk up front, lowest id first; balances can then be
+        // checked and changed in memory and are flushed as one JDBC batch at commit
+        Map<Long, Card> cards = cardService.lockCardEntitiesByIds(cardIds);
+        User user = userService.getUserReference(userId);
+        
+        List<Transaction> transactions = new ArrayList<>(chunk.size());
+        List<String> failures = new ArrayList<>(chunk.size());
+        for (TransferRequest transfer : chunk) {
+            Card fromCard = cards.get(transfer.getFromCardId());
+            Card toCard = cards.get(transfer.getToCardId());
+            
+            if (fromCard == null || toCard == null) {
+                Long missingId = fromCard == null ? transfer.getFromCardId() : transfer.getToCardId();
+                transactions.add(null);
+                failures.add("Card not found with id: " + missingId);
+                continue;
+            }
+            
+            String failure = null;
+            if (fromCard.getId().equals(toCard.getId())) {
+                failure = "Cannot transfer to the same card";
+            } else if (!fromCard.canTransfer(transfer.getAmount())) {
+                failure = "Insufficient funds or card is not available for transfer";
+            } else if (toCard.getStatus() != Card.CardStatus.ACTIVE || toCard.isExpired()) {
+                failure = "Destination card is not available for transfers";
+            }
+            
+            Transaction transaction = new Transaction(transfer.getAmount(), Transaction.TransactionType.TRANSFER,
+                    fromCard, toCard, user);
+            transaction.setDescription(transfer.getDescription());
+            
+            if (failure == null) {
+                fromCard.setBalance(fromCard.getBalance().subtract(transfer.getAmount()));
+                toCard.setBalance(toCard.getBalance().add(transfer.getAmount()));
+                transaction.setStatus(Transaction.TransactionStatus.COMPLETED);
+            } else {
+                transaction.setStatus(Transaction.TransactionStatus.FAILED);
+                transaction.setFailureReason(failure);
+            }
+            
+            transactions.add(transaction);
+            failures.add(failure);
+        }
+        
+        transactionRepository.saveAll(transactions.stream().filter(Objects::nonNull).toList());
+        
+        List<BatchTransferResult> results = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            Transaction transaction = transactions.get(i);
+            results.add(new BatchTransferResult(
+                    offset + i,
+                    transaction != null ? transaction.getStatus().name() : Transaction.TransactionStatus.FAILED.name(),
+                    transaction != null ? transaction.getId() : null,
+                    failures.get(i)));
+        }
+        
+        return results;
+    }
+    
+    private TransactionDto findIdempotentTransfer(Long userId, String idempotencyKey) {
+        TransactionDto recent = idempotencyService.getRecent(userId, idempotencyKey);
+        if (recent != null) {
+            return recent;
+        }
+        
+        TransactionDto stored = transactionTemplate.execute(status -> transactionRepository
+                .findByUserIdAndIdempotencyKey(userId, idempotencyKey)
+                .orElse(null));
+        if (stored != null) {
+            idempotencyService.remember(userId, idempotencyKey, stored);
+        }
+        return stored;
+    }
+    
+    private TransactionDto replay(TransferRequest request, TransactionDto previous) {
+        if (previous.getAmount().compareTo(request.getAmount()) != 0 ||
+            !request.getFromCardId().equals(previous.getFromCardId()) ||
+            !request.getToCardId().equals(previous.getToCardId())) {
+            throw new BusinessException("Idempotency-Key has already been used for a different transfer");
+        }
+        // Fail a retry of a failed transfer the same way as the original call
+        if (Transaction.TransactionStatus.FAILED.name().equals(previous.getStatus())) {
+            String failureReason = transactionTemplate.execute(status -> transactionRepository
+                    .findFailureReasonById(previous.getId())
+                    .orElse("Transfer could not be completed"));
+            throw new TransferFailedException(failureReason);
+        }
+        return previous;
+    }
+    
+    private TransactionDto executeTransfer(TransferRequest request, Long userId, String idempotencyKey) {
+        // Both cards and their owners in a single statement; a missing card is reported there
+        // A HashSet rather than Set.of, which rejects the duplicate of a same-card transfer
+        Map<Long, Card> cards = cardService.findCardEntitiesWithOwner(
+                new HashSet<>(List.of(request.getFromCardId(), request.getToCardId())));
+        Card fromCard = cards.get(request.getFromCardId());
+        Card toCard = cards.get(request.getToCardId());
         
         // Validate ownership
-        if (!fromCard.getOwner().getUsername().equals(username)) {
+        if (!fromCard.getOwner().getId().equals(userId)) {
             throw new UnauthorizedException("You can only transfer from your own cards");
         }
         
-        if (!toCard.getOwner().getUsername().equals(username)) {
+        if (!toCard.getOwner().getId().equals(userId)) {
             throw new UnauthorizedException("You can only transfer to your own cards");
         }
         
@@ -52,66 +265,127 @@ public class TransactionService {
             throw new BusinessException("Cannot transfer to the same card");
         }
         
-        if (!fromCard.canTransfer(request.getAmount())) {
-            throw new BusinessException("Insufficient funds or card is not available for transfer");
+        // Move the money with conditional updates, touching the lower card id first
+        // so that concurrent transfers over the same pair cannot deadlock
+        if (fromCard.getId() < toCard.getId()) {
+            debit(fromCard, request.getAmount());
+            credit(toCard, request.getAmount());
+        } else {
+            credit(toCard, request.getAmount());
+            debit(fromCard, request.getAmount());
         }
         
-        if (toCard.getStatus() != Card.CardStatus.ACTIVE || toCard.isExpired()) {
-            throw new BusinessException("Destination card is not available for transfers");
-        }
+        // The owner is already in the persistence context, so this does not hit the database
+        User user = userService.getUserReference(userId);
         
-        // Create transaction
-        Transaction transaction = new Transaction();
-        transaction.setAmount(request.getAmount());
-        transaction.setType(Transaction.TransactionType.TRANSFER);
-        transaction.setStatus(Transaction.TransactionStatus.PENDING);
+        Transaction transaction = new Transaction(request.getAmount(), Transaction.TransactionType.TRANSFER,
+                fromCard, toCard, user);
+        transaction.setStatus(Transaction.TransactionStatus.COMPLETED);
         transaction.setDescription(request.getDescription());
-        transaction.setFromCard(fromCard);
-        transaction.setToCard(toCard);
-        transaction.setUser(user);
+        transaction.setIdempotencyKey(idempotencyKey);
         
         Transaction savedTransaction = transactionRepository.save(transaction);
-        
-        // Process transfer
+        return convertToDto(savedTransaction);
+    }
+    
+    private void debit(Card card, BigDecimal amount) {
+        if (!cardService.debitIfSufficient(card.getId(), amount)) {
+            throw new TransferFailedException("Insufficient funds or card is not available for transfer");
+        }
+    }
+    
+    private void credit(Card card, BigDecimal amount) {
+        if (!cardService.creditIfActive(card.getId(), amount)) {
+            throw new TransferFailedException("Destination card is not available for transfers");
+        }
+    }
+    
+    private void recordFailedTransfer(TransferRequest request, Long userId, String idempotencyKey,
+                                      String failureReason) {
         try {
-            fromCard.setBalance(fromCard.getBalance().subtract(request.getAmount()));
-            toCard.setBalance(toCard.getBalance().add(request.getAmount()));
-            
-            savedTransaction.setStatus(Transaction.TransactionStatus.COMPLETED);
-            transactionRepository.save(savedTransaction);
-            
-            return convertToDto(savedTransaction);
-        } catch (Exception e) {
-            savedTransaction.setStatus(Transaction.TransactionStatus.FAILED);
-            transactionRepository.save(savedTransaction);
-            throw new BusinessException("Transfer failed: " + e.getMessage());
+            transactionTemplate.executeWithoutResult(status -> {
+                Transaction transaction = new Transaction(request.getAmount(), Transaction.TransactionType.TRANSFER,
+                        cardService.getCardReference(request.getFromCardId()),
+                        cardService.getCardReference(request.getToCardId()),
+                        userService.getUserReference(userId));
+                transaction.setStatus(Transaction.TransactionStatus.FAILED);
+                transaction.setDescription(request.getDescription());
+                transaction.setIdempotencyKey(idempotencyKey);
+                transaction.setFailureReason(failureReason);
+                transactionRepository.save(transaction);
+            });
+        } catch (DataIntegrityViolationException e) {
+            // A concurrent request with the same idempotency key has already been recorded
+        }
+    }
+    
+    private void backOff(int attempt) {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(TRANSFER_RETRY_BACKOFF_MS * attempt) + 1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException("Transfer was interrupted", e);
         }
     }
     
     @Transactional(readOnly = true)
     public TransactionDto getTransactionById(Long id) {
-        Transaction transaction = transactionRepository.findById(id)
+        return transactionRepository.findDtoById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Transaction not found with id: " + id));
-        return convertToDto(transaction);
     }
     
     @Transactional(readOnly = true)
     public TransactionDto getTransactionByIdForUser(Long id, String username) {
-        Transaction transaction = transactionRepository.findById(id)
+        TransactionDto transaction = transactionRepository.findDtoById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Transaction not found with id: " + id));
         
-        if (!transaction.getUser().getUsername().equals(username)) {
+        if (!transaction.getUsername().equals(username)) {
             throw new UnauthorizedException("You can only access your own transactions");
         }
         
-        return convertToDto(transaction);
+        return transaction;
+    }
+    
+    @Transactional(readOnly = true)
+    public String getTransactionETag(Long id, String username, boolean isAdmin) {
+        TransactionRepository.TransactionVersion version = transactionRepository.findVersionById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Transaction not found with id: " + id));
+        
+        if (!isAdmin && !version.getUsername().equals(username)) {
+            throw new UnauthorizedException("You can only access your own transactions");
+        }
+        
+        return ETags.of("transaction", id, version.getUpdatedAt(),
+                version.getFromCardUpdatedAt(), version.getToCardUpdatedAt(), version.getUsername());
+    }
+    
+    @Transactional(readOnly = true)
+    public String getTransactionsETagForUser(String username, Transaction.TransactionType type,
+                                             Transaction.TransactionStatus status,
+                                             LocalDateTime fromDate, LocalDateTime toDate, Pageable pageable) {
+        User user = userService.findUserEntityByUsername(username);
+        ListVersion version = transactionRepository.findListVersionByUserAndFilters(
+                user.getId(), type, status, fromDate, toDate);
+        // Each filter and page is its own representation, so they are part of the tag
+        return ETags.of("transactions", username, type, status, fromDate, toDate, pageable,
+                version.getLastUpdated(), version.getCount());
+    }
+    
+    @Transactional(readOnly = true)
+    @UseConnectionPool(ConnectionPool.REPORTING)
+    public String getAllTransactionsETag(Transaction.TransactionType type,
+                                         Transaction.TransactionStatus status,
+                                         LocalDateTime fromDate, LocalDateTime toDate, String username,
+                                         Pageable pageable) {
+        ListVersion version = transactionRepository.findListVersionByFilters(type, status, fromDate, toDate, username);
+        return ETags.of("transactions", type, status, fromDate, toDate, username, pageable,
+                version.getLastUpdated(), version.getCount());
     }
     
     @Transactional(readOnly = true)
     public Page<TransactionDto> getTransactionsByUser(String username, Pageable pageable) {
         User user = userService.findUserEntityByUsername(username);
-        return transactionRepository.findByUser(user, pageable)
-                .map(this::convertToDto);
+        return transactionRepository.findByUserId(user.getId(), pageable);
     }
     
     @Transactional(readOnly = true)
@@ -120,25 +394,49 @@ public class TransactionService {
                                                         LocalDateTime fromDate, LocalDateTime toDate, 
                                                         Pageable pageable) {
         User user = userService.findUserEntityByUsername(username);
-        return transactionRepository.findByUserAndFilters(user, type, status, fromDate, toDate, pageable)
-                .map(this::convertToDto);
+        return transactionRepository.findByUserAndFilters(user.getId(), type, status, fromDate, toDate, pageable);
     }
     
     @Transactional(readOnly = true)
+    public CursorPage<TransactionDto> getTransactionHistory(Long userId, String cursor, int size) {
+        int pageSize = Math.max(1, Math.min(size, MAX_HISTORY_PAGE_SIZE));
+        // One extra row tells whether another page exists without a COUNT query
+        Pageable limit = PageRequest.ofSize(pageSize + 1);
+        
+        List<TransactionDto> rows;
+        if (cursor == null) {
+            rows = transactionRepository.findHistoryByUserId(userId, limit);
+        } else {
+            HistoryCursor after = HistoryCursor.decode(cursor);
+            rows = transactionRepository.findHistoryByUserIdBefore(userId, after.getCreatedAt(), after.getId(), limit);
+        }
+        
+        String nextCursor = null;
+        if (rows.size() > pageSize) {
+            rows = rows.subList(0, pageSize);
+            TransactionDto last = rows.get(pageSize - 1);
+            nextCursor = new HistoryCursor(last.getCreatedAt(), last.getId()).encode();
+        }
+        
+        return new CursorPage<>(rows, nextCursor);
+    }
+    
+    @Transactional(readOnly = true)
+    @UseConnectionPool(ConnectionPool.REPORTING)
     public Page<TransactionDto> getAllTransactions(Pageable pageable) {
-        return transactionRepository.findAll(pageable)
-                .map(this::convertToDto);
+        return transactionRepository.findAllDtos(pageable);
     }
     
     @Transactional(readOnly = true)
+    @UseConnectionPool(ConnectionPool.REPORTING)
     public Page<TransactionDto> searchAllTransactions(Transaction.TransactionType type, 
                                                       Transaction.TransactionStatus status,
                                                       LocalDateTime fromDate, LocalDateTime toDate, 
                                                       String username, Pageable pageable) {
-        return transactionRepository.findByFilters(type, status, fromDate, toDate, username, pageable)
-                .map(this::convertToDto);
+        return transactionRepository.findByFilters(type, status, fromDate, toDate, username, pageable);
     }
     
+    @UseConnectionPool(ConnectionPool.TRANSFER)
     public TransactionDto cancelTransaction(Long id, String username) {
         Transaction transaction = transactionRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Transaction not found with id: " + id));
@@ -156,16 +454,6 @@ public class TransactionService {
         return convertToDto(savedTransaction);
     }
     
-    public void processPendingTransactions() {
-        LocalDateTime cutoffTime = LocalDateTime.now().minusHours(1);
-        List<Transaction> pendingTransactions = transactionRepository.findPendingTransactionsOlderThan(cutoffTime);
-        
-        for (Transaction transaction : pendingTransactions) {
-            transaction.setStatus(Transaction.TransactionStatus.FAILED);
-            transactionRepository.save(transaction);
-        }
-    }
-    
     private TransactionDto convertToDto(Transaction transaction) {
         String fromCardNumber = transaction.getFromCard() != null ? 
                 transaction.getFromCard().getMaskedCardNumber() : null;
@@ -1,5 +1,8 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.config.CacheConfig;
+import com.example.bankcards.config.ConnectionPool;
+import com.example.bankcards.config.UseConnectionPool;
 import com.example.bankcards.dto.CreateUserRequest;
 import com.example.bankcards.dto.UserDto;
 import com.example.bankcards.entity.User;
@@ -8,6 +11,8 @@ import com.example.bankcards.exception.ResourceNotFoundException;
 import com.example.bankcards.repository.UserRepository;
 import com.example.bankcards.util.EncryptionUtil;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -26,6 +31,12 @@ public class UserService {
     @Autowired
     private EncryptionUtil encryptionUtil;
     
+    @Autowired
+    private UserStateService userStateService;
+    
+    @Autowired
+    private CacheManager cacheManager;
+    
     public UserDto createUser(CreateUserRequest request) {
         if (userRepository.existsByUsername(request.getUsername())) {
             throw new BusinessException("Username already exists");
@@ -62,15 +73,15 @@ public class UserService {
     }
     
     @Transactional(readOnly = true)
+    @UseConnectionPool(ConnectionPool.REPORTING)
     public Page<UserDto> getAllUsers(Pageable pageable) {
-        return userRepository.findAllActive(pageable)
-                .map(this::convertToDto);
+        return userRepository.findAllActive(pageable);
     }
     
     @Transactional(readOnly = true)
+    @UseConnectionPool(ConnectionPool.REPORTING)
     public Page<UserDto> searchUsers(String username, String email, String firstName, String lastName, Pageable pageable) {
-        return userRepository.findByFilters(username, email, firstName, lastName, pageable)
-                .map(this::convertToDto);
+        return userRepository.findByFilters(username, email, firstName, lastName, pageable);
     }
     
     public UserDto updateUser(Long id, CreateUserRequest request) {
@@ -87,6 +98,7 @@ public class UserService {
             throw new BusinessException("Email already exists");
         }
         
+        String previousUsername = user.getUsername();
         user.setUsername(request.getUsername());
         user.setEmail(request.getEmail());
         if (request.getPassword() != null && !request.getPassword().isEmpty()) {
@@ -97,6 +109,7 @@ public class UserService {
         user.setRole(User.Role.valueOf(request.getRole().toUpperCase()));
         
         User savedUser = userRepository.save(user);
+        evictUser(id, previousUsername);
         return convertToDto(savedUser);
     }
     
@@ -106,6 +119,7 @@ public class UserService {
         
         user.setIsActive(false);
         userRepository.save(user);
+        evictUser(id, user.getUsername());
     }
     
     public void activateUser(Long id) {
@@ -114,9 +128,13 @@ public class UserService {
         
         user.setIsActive(true);
         userRepository.save(user);
+        evictUser(id, user.getUsername());
     }
     
+    // Read on the primary: a lagging replica would put the pre-change user back into the cache after evictUser
+    @Cacheable(cacheNames = CacheConfig.USERS_BY_USERNAME, key = "#username")
     @Transactional(readOnly = true)
+    @UseConnectionPool(ConnectionPool.PRIMARY)
     public User findUserEntityByUsername(String username) {
         return userRepository.findByUsername(username)
                 .orElseThrow(() -> new ResourceNotFoundException("User not found with username: " + username));
@@ -128,6 +146,21 @@ public class UserService {
                 .orElseThrow(() -> new ResourceNotFoundException("User not found with id: " + id));
     }
     
+    public User getUserReference(Long id) {
+        return userRepository.getReferenceById(id);
+    }
+    
+    public void rehashPassword(User user, String newEncodedPassword) {
+        if (userRepository.updatePasswordIfUnchanged(user.getId(), user.getPassword(), newEncodedPassword) > 0) {
+            evictUser(user.getId(), user.getUsername());
+        }
+    }
+    
+    private void evictUser(Long id, String username) {
+        cacheManager.getCache(CacheConfig.USERS_BY_USERNAME).evict(username);
+        userStateService.evict(id);
+    }
+    
     private UserDto convertToDto(User user) {
         return new UserDto(
                 user.getId(),
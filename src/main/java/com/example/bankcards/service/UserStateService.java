@@ -0,0 +1,67 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.ConnectionPool;
+import com.example.bankcards.config.UseConnectionPool;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.repository.UserRepository.UserState;
+import com.example.bankcards.util.VerifiedToken;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Revocation check for stateless JWT authentication. Holds only the username, role and
+ * active flag per user id, so a token can be trusted without loading the User entity.
+ * Entries are evicted when UserService changes them and otherwise expire after the TTL,
+ * which bounds how long a change made on another node can go unnoticed. States are read
+ * on the primary, so an eviction is never followed by re-caching the old state from a
+ * lagging replica.
+ */
+@Service
+public class UserStateService {
+    
+    private final UserRepository userRepository;
+    
+    private final Cache<Long, Optional<UserState>> states;
+    
+    public UserStateService(UserRepository userRepository,
+                            @Value("${security.jwt.user-state.cache-size:10000}") long cacheSize,
+                            @Value("${security.jwt.user-state.cache-ttl:PT30S}") Duration cacheTtl) {
+        this.userRepository = userRepository;
+        this.states = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(cacheTtl)
+                .build();
+    }
+    
+    /**
+     * Whether the user behind the token still exists, is active and has the username and role the token claims.
+     */
+    @UseConnectionPool(ConnectionPool.PRIMARY)
+    public boolean isCurrent(VerifiedToken token) {
+        return states.get(token.getUserId(), userRepository::findStateById)
+                .filter(UserState::isActive)
+                .filter(state -> state.getUsername().equals(token.getSubject()))
+                .filter(state -> state.getRole().name().equals(token.getRole()))
+                .isPresent();
+    }
+    
+    public void evict(Long userId) {
+        states.invalidate(userId);
+        // Evict again once the change is visible, so a concurrent request cannot re-cache the old state
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    states.invalidate(userId);
+                }
+            });
+        }
+    }
+}
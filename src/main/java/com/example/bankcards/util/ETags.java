@@ -0,0 +1,36 @@
+package com.example.bankcards.util;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+/**
+ * Builds entity tags from the values that identify a version of a resource. The values are
+ * hashed, so ids, versions and timestamps are not exposed in the header.
+ */
+public final class ETags {
+    
+    // Clients may keep the response but must revalidate it with If-None-Match before reuse
+    public static final CacheControl REVALIDATE = CacheControl.noCache().cachePrivate();
+    
+    private ETags() {}
+    
+    public static String of(Object... parts) {
+        String value = Arrays.stream(parts)
+                .map(String::valueOf)
+                .collect(Collectors.joining("|"));
+        return "\"" + DigestUtils.md5DigestAsHex(value.getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+    
+    public static <T> ResponseEntity<T> notModified(String eTag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .cacheControl(REVALIDATE)
+                .eTag(eTag)
+                .build();
+    }
+}
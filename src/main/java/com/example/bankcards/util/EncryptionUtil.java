@@ -1,13 +1,90 @@
 package com.example.bankcards.util;
 
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.Callable;
 
 @Component
 public class EncryptionUtil {
     
-    private final PasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
+    private static final int GCM_IV_LENGTH = 12;
+    
+    private static final int GCM_TAG_BITS = 128;
+    
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+    
+    // Comma-separated version:base64 pairs; older versions stay listed until rotated away
+    @Value("${bank.card-encryption.keys}")
+    private String cardKeysSpec;
+    
+    @Value("${bank.card-encryption.active-key-version}")
+    private int activeKeyVersion;
+    
+    @Value("${bank.card-encryption.index-key}")
+    private String indexKeyBase64;
+    
+    private final SecureRandom secureRandom = new SecureRandom();
+    
+    private Map<Integer, SecretKey> cardKeys;
+    
+    private SecretKey indexKey;
+    
+    // Cipher and Mac are not thread-safe and costly to look up, so each thread keeps its own
+    private final ThreadLocal<Cipher> ciphers = perThread(() -> Cipher.getInstance("AES/GCM/NoPadding"));
+    
+    private final ThreadLocal<Mac> macs = perThread(() -> {
+        Mac hmac = Mac.getInstance("HmacSHA256");
+        hmac.init(indexKey);
+        return hmac;
+    });
+    
+    @PostConstruct
+    void init() {
+        if (!StringUtils.hasText(cardKeysSpec) || !StringUtils.hasText(indexKeyBase64)) {
+            throw new IllegalStateException("Card encryption keys are not configured; set bank.card-encryption.keys "
+                    + "and bank.card-encryption.index-key (BANK_CARD_ENCRYPTION_KEYS, BANK_CARD_INDEX_KEY)");
+        }
+        Map<Integer, SecretKey> keys = new HashMap<>();
+        for (String entry : cardKeysSpec.split(",")) {
+            String[] versionAndKey = entry.trim().split(":", 2);
+            if (versionAndKey.length != 2) {
+                throw new IllegalStateException("Card encryption keys must be version:base64 pairs");
+            }
+            keys.put(Integer.valueOf(versionAndKey[0]),
+                    new SecretKeySpec(decodeKey(versionAndKey[1], "card encryption key " + versionAndKey[0]), "AES"));
+        }
+        if (!keys.containsKey(activeKeyVersion)) {
+            throw new IllegalStateException("No card encryption key configured for active version " + activeKeyVersion);
+        }
+        cardKeys = Map.copyOf(keys);
+        indexKey = new SecretKeySpec(decodeKey(indexKeyBase64, "card index key"), "HmacSHA256");
+    }
+    
+    private static byte[] decodeKey(String base64, String name) {
+        byte[] key = Base64.getDecoder().decode(base64.trim());
+        if (key.length != 32) {
+            throw new IllegalStateException("The " + name + " must be Base64 of 32 bytes, got " + key.length);
+        }
+        return key;
+    }
     
     public String encryptPassword(String rawPassword) {
         return passwordEncoder.encode(rawPassword);
@@ -17,6 +94,10 @@ public class EncryptionUtil {
         return passwordEncoder.matches(rawPassword, encodedPassword);
     }
     
+    public boolean needsRehash(String encodedPassword) {
+        return passwordEncoder.upgradeEncoding(encodedPassword);
+    }
+    
     public String maskCardNumber(String cardNumber) {
         if (cardNumber == null || cardNumber.length() < 4) {
             return "**** **** **** ****";
@@ -25,23 +106,79 @@ public class EncryptionUtil {
         return "**** **** **** " + lastFour;
     }
     
+    public int getActiveKeyVersion() {
+        return activeKeyVersion;
+    }
+    
+    /**
+     * Encrypts a card number with AES-GCM under the active key and a fresh random IV.
+     * The result is Base64 of IV followed by ciphertext and tag, so equal numbers encrypt differently.
+     * Store it together with {@link #getActiveKeyVersion()}.
+     */
     public String encryptCardNumber(String cardNumber) {
-        // Simple encryption for demo purposes
-        // In production, use proper encryption like AES
-        StringBuilder encrypted = new StringBuilder();
-        for (char c : cardNumber.toCharArray()) {
-            encrypted.append((char) (c + 3));
+        byte[] iv = new byte[GCM_IV_LENGTH];
+        secureRandom.nextBytes(iv);
+        try {
+            Cipher cipher = ciphers.get();
+            cipher.init(Cipher.ENCRYPT_MODE, cardKeys.get(activeKeyVersion), new GCMParameterSpec(GCM_TAG_BITS, iv));
+            byte[] plaintext = cardNumber.getBytes(StandardCharsets.US_ASCII);
+            byte[] output = new byte[GCM_IV_LENGTH + cipher.getOutputSize(plaintext.length)];
+            System.arraycopy(iv, 0, output, 0, GCM_IV_LENGTH);
+            cipher.doFinal(plaintext, 0, plaintext.length, output, GCM_IV_LENGTH);
+            return Base64.getEncoder().encodeToString(output);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Card number encryption failed", e);
         }
-        return encrypted.toString();
     }
     
-    public String decryptCardNumber(String encryptedCardNumber) {
-        // Simple decryption for demo purposes
-        // In production, use proper decryption like AES
+    public String decryptCardNumber(String encryptedCardNumber, int keyVersion) {
+        if (isLegacyCardNumber(encryptedCardNumber)) {
+            return decryptLegacyCardNumber(encryptedCardNumber);
+        }
+        SecretKey key = cardKeys.get(keyVersion);
+        if (key == null) {
+            throw new IllegalStateException("No card encryption key configured for version " + keyVersion);
+        }
+        byte[] input = Base64.getDecoder().decode(encryptedCardNumber);
+        try {
+            Cipher cipher = ciphers.get();
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_BITS, input, 0, GCM_IV_LENGTH));
+            byte[] plaintext = cipher.doFinal(input, GCM_IV_LENGTH, input.length - GCM_IV_LENGTH);
+            return new String(plaintext, StandardCharsets.US_ASCII);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Card number decryption failed", e);
+        }
+    }
+    
+    /**
+     * Deterministic keyed hash of a card number. It is stored next to the ciphertext so that
+     * duplicates and lookups are a single indexed equality match without decrypting anything.
+     */
+    public String hashCardNumber(String cardNumber) {
+        return HexFormat.of().formatHex(macs.get().doFinal(cardNumber.getBytes(StandardCharsets.US_ASCII)));
+    }
+    
+    // Values written before AES-GCM were 16 digits, each shifted by +3, which Base64 output never matches
+    public boolean isLegacyCardNumber(String storedCardNumber) {
+        return storedCardNumber.length() == 16
+                && storedCardNumber.chars().allMatch(c -> c >= '0' + 3 && c <= '9' + 3);
+    }
+    
+    private String decryptLegacyCardNumber(String encryptedCardNumber) {
         StringBuilder decrypted = new StringBuilder();
         for (char c : encryptedCardNumber.toCharArray()) {
             decrypted.append((char) (c - 3));
         }
         return decrypted.toString();
     }
+    
+    private static <T> ThreadLocal<T> perThread(Callable<T> factory) {
+        return ThreadLocal.withInitial(() -> {
+            try {
+                return factory.call();
+            } catch (Exception e) {
+                throw new IllegalStateException("Crypto provider unavailable", e);
+            }
+        });
+    }
 }
@@ -0,0 +1,45 @@
+package com.example.bankcards.util;
+
+import java.time.Instant;
+
+/**
+ * Claims of a JWT whose signature and expiry have already been checked by {@link JwtUtil#verify(String)}.
+ */
+public final class VerifiedToken {
+    
+    private final Long userId;
+    
+    private final String subject;
+    
+    private final String role;
+    
+    private final Instant expiresAt;
+    
+    public VerifiedToken(Long userId, String subject, String role, Instant expiresAt) {
+        this.userId = userId;
+        this.subject = subject;
+        this.role = role;
+        this.expiresAt = expiresAt;
+    }
+    
+    public boolean isExpired(Instant now) {
+        return !now.isBefore(expiresAt);
+    }
+    
+    // Null for tokens issued before the uid claim was added
+    public Long getUserId() {
+        return userId;
+    }
+    
+    public String getSubject() {
+        return subject;
+    }
+    
+    public String getRole() {
+        return role;
+    }
+    
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+}
@@ -1,13 +1,19 @@
 package com.example.bankcards;
 
+import com.example.bankcards.config.CacheConfig;
 import com.example.bankcards.dto.AuthResponse;
 import com.example.bankcards.dto.LoginRequest;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.UserRepository;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureWebMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
 import org.springframework.http.MediaType;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
@@ -18,7 +24,7 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @SpringBootTest
-@AutoConfigureWebMvc
+@AutoConfigureMockMvc
 @ActiveProfiles("test")
 @Transactional
 class BankCardsApplicationIntegrationTest {
@@ -29,6 +35,24 @@ class BankCardsApplicationIntegrationTest {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    // Liquibase seeds the admin in real databases; the test schema is created by Hibernate
+    @BeforeEach
+    void setUp() {
+        // Each test's admin is rolled back with it; drop the one cached by username
+        cacheManager.getCache(CacheConfig.USERS_BY_USERNAME).clear();
+        userRepository.save(new User("admin", "admin@bank.com", passwordEncoder.encode("password123"),
+                "Admin", "User", User.Role.ADMIN));
+    }
+
     @Test
     void testAuthenticationFlow() throws Exception {
         // Test login
@@ -57,7 +81,8 @@ class BankCardsApplicationIntegrationTest {
     @Test
     void testSwaggerDocumentation() throws Exception {
         mockMvc.perform(get("/swagger-ui.html"))
-                .andExpect(status().isOk());
+                .andExpect(status().is3xxRedirection())
+                .andExpect(redirectedUrl("/swagger-ui/index.html"));
     }
 
     @Test
@@ -0,0 +1,66 @@
+package com.example.bankcards.benchmark;
+
+import com.example.bankcards.util.EncryptionUtil;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of card number encryption, decryption and blind indexing, single- and multi-threaded.
+ * Run with {@code mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test
+ * "-Dexec.args=-cp %classpath com.example.bankcards.benchmark.CardNumberEncryptionBenchmark"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CardNumberEncryptionBenchmark {
+
+    private static final String CARD_NUMBER = "4276123456789012";
+
+    private EncryptionUtil encryptionUtil;
+    private String encrypted;
+
+    @Setup
+    public void setUp() {
+        encryptionUtil = new EncryptionUtil();
+        ReflectionTestUtils.setField(encryptionUtil, "cardKeysSpec", "1:2vuvtXh0NDepAqB4wZmxF3/I2rM1WKsnZrgtjN+xGTI=");
+        ReflectionTestUtils.setField(encryptionUtil, "activeKeyVersion", 1);
+        ReflectionTestUtils.setField(encryptionUtil, "indexKeyBase64", "T5eiEQ5mMO1GCCp7aXA+7zeGl7TWGNB4tOSUsFc9xwg=");
+        ReflectionTestUtils.invokeMethod(encryptionUtil, "init");
+        encrypted = encryptionUtil.encryptCardNumber(CARD_NUMBER);
+    }
+
+    @Benchmark
+    public String encrypt() {
+        return encryptionUtil.encryptCardNumber(CARD_NUMBER);
+    }
+
+    @Benchmark
+    public String decrypt() {
+        return encryptionUtil.decryptCardNumber(encrypted, 1);
+    }
+
+    @Benchmark
+    public String blindIndex() {
+        return encryptionUtil.hashCardNumber(CARD_NUMBER);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String decryptContended() {
+        return encryptionUtil.decryptCardNumber(encrypted, 1);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CardNumberEncryptionBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.bankcards.config;
+
+import com.example.bankcards.exception.ResourceNotFoundException;
+import com.example.bankcards.service.CardService;
+import com.example.bankcards.service.TransactionService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:connection-pools",
+        "bank.datasource.pools.reporting.hikari.maximum-pool-size=2",
+        "bank.datasource.pools.reporting.hikari.connection-timeout=250"
+})
+@ActiveProfiles("test")
+class ConnectionPoolRoutingTest {
+
+    @Autowired
+    private CardService cardService;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    @Qualifier("reportingDataSource")
+    private DataSource reportingDataSource;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void annotatedMethod_RunsOnItsPool() {
+        // Given
+        double before = annotatedRoutes("reporting");
+
+        // When
+        cardService.searchAllCards(null, null, null, PageRequest.of(0, 10));
+
+        // Then
+        assertEquals(before + 1, annotatedRoutes("reporting"));
+    }
+
+    @Test
+    void reportingPool_AppliesItsStatementTimeout() {
+        // When
+        Integer timeout = new JdbcTemplate(reportingDataSource).queryForObject(
+                "SELECT CAST(SETTING_VALUE AS INT) FROM INFORMATION_SCHEMA.SETTINGS WHERE SETTING_NAME = 'QUERY_TIMEOUT'",
+                Integer.class);
+
+        // Then
+        assertEquals(30000, timeout);
+    }
+
+    @Test
+    void reportingPoolExhausted_TransfersKeepTheirConnections() throws Exception {
+        // Given
+        double transferRoutesBefore = annotatedRoutes("transfer");
+        List<Connection> held = new ArrayList<>();
+        try {
+            held.add(reportingDataSource.getConnection());
+            held.add(reportingDataSource.getConnection());
+
+            // When
+            assertThrows(DataAccessResourceFailureException.class,
+                    () -> cardService.searchAllCards(null, null, null, PageRequest.of(0, 10)));
+
+            // Then
+            assertThrows(ResourceNotFoundException.class, () -> transactionService.cancelTransaction(-1L, "nobody"));
+            assertEquals(transferRoutesBefore + 1, annotatedRoutes("transfer"));
+            assertEquals(1, meterRegistry.get("hikaricp.connections.timeout").tag("pool", "reporting").counter().count());
+        } finally {
+            for (Connection connection : held) {
+                connection.close();
+            }
+        }
+    }
+
+    private double annotatedRoutes(String pool) {
+        return meterRegistry.get("datasource.routing")
+                .tag("pool", pool)
+                .tag("reason", "annotated")
+                .counter()
+                .count();
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.bankcards.config;
+
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.security.AuthenticatedUser;
+import com.example.bankcards.service.UserService;
+import com.example.bankcards.service.UserStateService;
+import com.example.bankcards.util.VerifiedToken;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:routing-primary",
+        "bank.datasource.replica.url=jdbc:h2:mem:routing-replica",
+        "bank.datasource.replica.lag-query=SELECT lag_seconds FROM replica_lag",
+        "bank.datasource.replica.lag-check-interval=PT1H",
+        "bank.datasource.replica.max-lag=PT2S"
+})
+@ActiveProfiles("test")
+class ReplicaRoutingDataSourceTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    @Qualifier("primaryDataSource")
+    private DataSource primaryDataSource;
+
+    @Autowired
+    @Qualifier("replicaDataSource")
+    private DataSource replicaDataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ReplicaLagMonitor replicaLagMonitor;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserStateService userStateService;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @BeforeEach
+    void setUp() {
+        markDatabase(new JdbcTemplate(primaryDataSource), "primary");
+        JdbcTemplate replica = new JdbcTemplate(replicaDataSource);
+        markDatabase(replica, "replica");
+        replica.execute("CREATE TABLE IF NOT EXISTS replica_lag (lag_seconds DOUBLE)");
+        replica.update("DELETE FROM replica_lag");
+        replica.update("INSERT INTO replica_lag VALUES (0)");
+        replicaLagMonitor.checkLag();
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void readOnlyTransaction_UsesReplica() {
+        assertEquals("replica", databaseName(true));
+        assertEquals("primary", databaseName(false));
+    }
+
+    @Test
+    void readOnlyTransaction_AfterOwnWrite_StaysOnPrimary() {
+        // Given
+        authenticate(1L, "writer");
+        assertEquals("replica", databaseName(true));
+
+        // When
+        assertEquals("primary", databaseName(false));
+
+        // Then
+        assertEquals("primary", databaseName(true));
+        authenticate(2L, "reader");
+        assertEquals("replica", databaseName(true));
+    }
+
+    @Test
+    void readOnlyTransaction_ReplicaLagging_FallsBackToPrimary() {
+        // Given
+        new JdbcTemplate(replicaDataSource).update("UPDATE replica_lag SET lag_seconds = 60");
+
+        // When
+        replicaLagMonitor.checkLag();
+
+        // Then
+        assertFalse(replicaLagMonitor.isUsable());
+        assertEquals("primary", databaseName(true));
+    }
+
+    @Test
+    void readOnlyTransaction_LagCheckFailing_FallsBackToPrimary() {
+        // Given
+        new JdbcTemplate(replicaDataSource).execute("DROP TABLE replica_lag");
+
+        // When
+        replicaLagMonitor.checkLag();
+
+        // Then
+        assertFalse(replicaLagMonitor.isUsable());
+        assertEquals("primary", databaseName(true));
+    }
+
+    @Test
+    void cachedUserLookups_ReadThePrimary() {
+        // Given: the replica has no users table, so a lookup routed there would fail
+        cacheManager.getCache(CacheConfig.USERS_BY_USERNAME).clear();
+        User user = userRepository.save(new User("routed", "routed@example.com", "encodedPassword",
+                "Routed", "User", User.Role.USER));
+        entityManagerFactory.getCache().evictAll();
+        try {
+            // When
+            User byUsername = userService.findUserEntityByUsername("routed");
+            boolean current = userStateService.isCurrent(
+                    new VerifiedToken(user.getId(), "routed", "USER", Instant.now().plusSeconds(60)));
+
+            // Then
+            assertEquals(user.getId(), byUsername.getId());
+            assertTrue(current);
+        } finally {
+            userRepository.delete(user);
+            userStateService.evict(user.getId());
+        }
+    }
+
+    private String databaseName(boolean readOnly) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(readOnly);
+        return transactionTemplate.execute(status ->
+                jdbcTemplate.queryForObject("SELECT name FROM routing_marker", String.class));
+    }
+
+    private static void markDatabase(JdbcTemplate database, String name) {
+        database.execute("CREATE TABLE IF NOT EXISTS routing_marker (name VARCHAR(16))");
+        database.update("DELETE FROM routing_marker");
+        database.update("INSERT INTO routing_marker VALUES (?)", name);
+    }
+
+    private static void authenticate(Long id, String username) {
+        AuthenticatedUser principal = new AuthenticatedUser(id, username, User.Role.USER);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+    }
+}
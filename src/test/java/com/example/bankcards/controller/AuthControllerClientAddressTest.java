@@ -0,0 +1,51 @@
+package com.example.bankcards.controller;
+
+import com.example.bankcards.dto.AuthResponse;
+import com.example.bankcards.dto.LoginRequest;
+import com.example.bankcards.service.AuthService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.datasource.url=jdbc:h2:mem:client-address")
+@ActiveProfiles("test")
+class AuthControllerClientAddressTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @MockBean
+    private AuthService authService;
+
+    @Test
+    void login_BehindTrustedProxy_UsesForwardedClientAddress() {
+        // Given
+        when(authService.authenticate(any(LoginRequest.class), anyString()))
+                .thenReturn(new AuthResponse("jwt-token", "user1", "USER"));
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("X-Forwarded-For", "203.0.113.7");
+
+        // When
+        ResponseEntity<AuthResponse> response = restTemplate.postForEntity("/api/auth/login",
+                new HttpEntity<>(new LoginRequest("user1", "password123"), headers), AuthResponse.class);
+
+        // Then
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        verify(authService).authenticate(any(LoginRequest.class), eq("203.0.113.7"));
+    }
+}
@@ -1,22 +1,32 @@
 package com.example.bankcards.controller;
 
+import com.example.bankcards.config.SecurityConfig;
 import com.example.bankcards.dto.AuthResponse;
 import com.example.bankcards.dto.LoginRequest;
+import com.example.bankcards.exception.TooManyRequestsException;
 import com.example.bankcards.service.AuthService;
+import com.example.bankcards.service.UserService;
+import com.example.bankcards.service.UserStateService;
+import com.example.bankcards.util.JwtUtil;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.time.Duration;
+
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(AuthController.class)
+@Import(SecurityConfig.class)
 class AuthControllerTest {
 
     @Autowired
@@ -25,6 +35,15 @@ class AuthControllerTest {
     @MockBean
     private AuthService authService;
 
+    @MockBean
+    private UserService userService;
+
+    @MockBean
+    private JwtUtil jwtUtil;
+
+    @MockBean
+    private UserStateService userStateService;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -34,7 +53,7 @@ class AuthControllerTest {
         LoginRequest loginRequest = new LoginRequest("user1", "password123");
         AuthResponse authResponse = new AuthResponse("jwt-token", "user1", "USER");
 
-        when(authService.authenticate(any(LoginRequest.class))).thenReturn(authResponse);
+        when(authService.authenticate(any(LoginRequest.class), anyString())).thenReturn(authResponse);
 
         // When & Then
         mockMvc.perform(post("/api/auth/login")
@@ -51,7 +70,7 @@ class AuthControllerTest {
         // Given
         LoginRequest loginRequest = new LoginRequest("user1", "wrongpassword");
 
-        when(authService.authenticate(any(LoginRequest.class)))
+        when(authService.authenticate(any(LoginRequest.class), anyString()))
                 .thenThrow(new RuntimeException("Invalid credentials"));
 
         // When & Then
@@ -72,4 +91,22 @@ class AuthControllerTest {
                 .content(objectMapper.writeValueAsString(loginRequest)))
                 .andExpect(status().isBadRequest());
     }
+
+    @Test
+    void login_RateLimited() throws Exception {
+        // Given
+        LoginRequest loginRequest = new LoginRequest("user1", "password123");
+
+        when(authService.authenticate(any(LoginRequest.class), anyString()))
+                .thenThrow(new TooManyRequestsException("Too many login attempts, please try again later",
+                        Duration.ofMillis(1500)));
+
+        // When & Then
+        mockMvc.perform(post("/api/auth/login")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(loginRequest)))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "2"))
+                .andExpect(jsonPath("$.message").value("Too many login attempts, please try again later"));
+    }
 }
@@ -0,0 +1,189 @@
+package com.example.bankcards.controller;
+
+import com.example.bankcards.config.CacheConfig;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.CardService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class CardControllerETagTest {
+
+    @Autowired
+    private WebApplicationContext context;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private CardService cardService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    private MockMvc mockMvc;
+    private Authentication authentication;
+    private User owner;
+    private Card card;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.webAppContextSetup(context).build();
+        // The user is recreated for every test; drop the one cached by username from the previous test
+        cacheManager.getCache(CacheConfig.USERS_BY_USERNAME).clear();
+        owner = userRepository.save(new User("etag", "etag@example.com", "encodedPassword",
+                "Entity", "Tag", User.Role.USER));
+        authentication = new UsernamePasswordAuthenticationToken("etag", null,
+                List.of(new SimpleGrantedAuthority("ROLE_USER")));
+
+        card = new Card("4400000000000001", "ENTITY TAG", LocalDate.now().plusYears(3), owner);
+        card.setBalance(new BigDecimal("100.00"));
+        card.setLast4("0001");
+        card = cardRepository.save(card);
+    }
+
+    @AfterEach
+    void tearDown() {
+        cardRepository.deleteAll();
+        userRepository.delete(owner);
+    }
+
+    @Test
+    void getCardById_MatchingETag_ReturnsNotModifiedAfterVersionProbe() throws Exception {
+        // Given
+        String eTag = fetchETag("/api/cards/" + card.getId());
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        // When & Then
+        mockMvc.perform(get("/api/cards/" + card.getId())
+                .principal(authentication)
+                .header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, eTag))
+                .andExpect(content().string(""));
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void getCardById_BalanceChanged_ReturnsNewRepresentation() throws Exception {
+        // Given
+        String eTag = fetchETag("/api/cards/" + card.getId());
+
+        // When
+        transactionTemplate.executeWithoutResult(status -> cardService.debitIfSufficient(card.getId(), new BigDecimal("30.00")));
+
+        // Then
+        String newETag = mockMvc.perform(get("/api/cards/" + card.getId())
+                .principal(authentication)
+                .header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.balance").value(70.00))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotEquals(eTag, newETag);
+    }
+
+    @Test
+    void getCardById_Last4Backfilled_ReturnsNewRepresentation() throws Exception {
+        // Given
+        String eTag = fetchETag("/api/cards/" + card.getId());
+
+        // When
+        transactionTemplate.executeWithoutResult(status -> cardRepository.updateLast4(card.getId(), "9999"));
+
+        // Then
+        mockMvc.perform(get("/api/cards/" + card.getId())
+                .principal(authentication)
+                .header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.maskedCardNumber").value("**** **** **** 9999"));
+    }
+
+    @Test
+    void getCards_UnchangedList_ReturnsNotModified() throws Exception {
+        // Given
+        String eTag = fetchETag("/api/cards");
+
+        // When & Then
+        mockMvc.perform(get("/api/cards")
+                .principal(authentication)
+                .header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void getCards_OtherPage_ReturnsNewRepresentation() throws Exception {
+        // Given
+        String eTag = fetchETag("/api/cards?page=0&size=20");
+
+        // When
+        String otherPageETag = mockMvc.perform(get("/api/cards?page=1&size=20")
+                .principal(authentication)
+                .header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        // Then
+        assertNotEquals(eTag, otherPageETag);
+    }
+
+    @Test
+    void getCards_Last4Backfilled_ReturnsNewRepresentation() throws Exception {
+        // Given
+        String eTag = fetchETag("/api/cards");
+
+        // When
+        transactionTemplate.executeWithoutResult(status -> cardRepository.updateLast4(card.getId(), "9999"));
+
+        // Then
+        mockMvc.perform(get("/api/cards")
+                .principal(authentication)
+                .header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].maskedCardNumber").value("**** **** **** 9999"));
+    }
+
+    private String fetchETag(String path) throws Exception {
+        return mockMvc.perform(get(path).principal(authentication))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache, private"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+    }
+}
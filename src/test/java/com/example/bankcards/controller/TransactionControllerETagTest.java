@@ -0,0 +1,134 @@
+package com.example.bankcards.controller;
+
+import com.example.bankcards.config.CacheConfig;
+import com.example.bankcards.dto.TransactionDto;
+import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.TransactionRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.TransactionService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class TransactionControllerETagTest {
+
+    @Autowired
+    private WebApplicationContext context;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    private MockMvc mockMvc;
+    private Authentication authentication;
+    private User owner;
+    private Card toCard;
+    private TransactionDto transfer;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.webAppContextSetup(context).build();
+        // The user is recreated for every test; drop the one cached by username from the previous test
+        cacheManager.getCache(CacheConfig.USERS_BY_USERNAME).clear();
+        owner = userRepository.save(new User("txetag", "txetag@example.com", "encodedPassword",
+                "Transaction", "Tag", User.Role.USER));
+        authentication = new UsernamePasswordAuthenticationToken("txetag", null,
+                List.of(new SimpleGrantedAuthority("ROLE_USER")));
+
+        Card fromCard = new Card("4500000000000001", "TRANSACTION TAG", LocalDate.now().plusYears(3), owner);
+        fromCard.setBalance(new BigDecimal("100.00"));
+        fromCard.setLast4("0001");
+        fromCard = cardRepository.save(fromCard);
+
+        toCard = new Card("4500000000000002", "TRANSACTION TAG", LocalDate.now().plusYears(3), owner);
+        toCard.setLast4("0002");
+        toCard = cardRepository.save(toCard);
+
+        transfer = transactionService.transferBetweenCards(
+                new TransferRequest(new BigDecimal("10.00"), fromCard.getId(), toCard.getId(), "tagged"),
+                owner.getId(), null);
+    }
+
+    @AfterEach
+    void tearDown() {
+        transactionRepository.deleteAll();
+        cardRepository.deleteAll();
+        userRepository.delete(owner);
+    }
+
+    @Test
+    void getTransactions_CardLast4Backfilled_ReturnsNewRepresentation() throws Exception {
+        // Given
+        String eTag = fetchETag("/api/transactions");
+
+        // When
+        transactionTemplate.executeWithoutResult(status -> cardRepository.updateLast4(toCard.getId(), "9999"));
+
+        // Then
+        mockMvc.perform(get("/api/transactions")
+                .principal(authentication)
+                .header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].toCardNumber").value("**** **** **** 9999"));
+    }
+
+    @Test
+    void getTransactionById_CardLast4Backfilled_ReturnsNewRepresentation() throws Exception {
+        // Given
+        String eTag = fetchETag("/api/transactions/" + transfer.getId());
+
+        // When
+        transactionTemplate.executeWithoutResult(status -> cardRepository.updateLast4(toCard.getId(), "9999"));
+
+        // Then
+        mockMvc.perform(get("/api/transactions/" + transfer.getId())
+                .principal(authentication)
+                .header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.toCardNumber").value("**** **** **** 9999"));
+    }
+
+    private String fetchETag(String path) throws Exception {
+        return mockMvc.perform(get(path).principal(authentication))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+    }
+}
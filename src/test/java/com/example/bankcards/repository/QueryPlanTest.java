@@ -0,0 +1,410 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.service.PendingTransactionSweeper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.Temporal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Runs the Liquibase schema against a real PostgreSQL, seeds it with a realistic
+ * volume of rows and checks that the hot repository queries are served by an index.
+ * Each repository method is called for real; the SQL Hibernate (or JdbcTemplate)
+ * sends is recorded together with its bind parameters and explained as a prepared
+ * statement under force_generic_plan, which is the plan the server settles on once
+ * the driver switches to server-side prepares. Admin searches run on the reporting
+ * pool, which forces custom plans, and are explained that way.
+ * <p>
+ * Needs Docker; runs with {@code mvn -Ppostgres-tests test -Dtest=QueryPlanTest},
+ * which fails instead of skipping when Docker is missing.
+ */
+@SpringBootTest(properties = {
+        "spring.liquibase.enabled=true",
+        "spring.jpa.hibernate.ddl-auto=validate",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.PostgreSQLDialect",
+        "bank.datasource.statement-timeout-sql=SET statement_timeout = %d",
+        "bank.transfer.pending-sweep.enabled=false",
+        "bank.card-encryption.rotation.enabled=false",
+        "bank.cards.expiry.cron=-"
+})
+@ActiveProfiles("test")
+@Testcontainers
+@EnabledIfSystemProperty(named = "postgres.tests", matches = "true")
+class QueryPlanTest {
+
+    private static final String GENERIC_PLAN = "force_generic_plan";
+
+    private static final String CUSTOM_PLAN = "force_custom_plan";
+
+    @Container
+    static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    @DynamicPropertySource
+    static void datasourceProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", POSTGRES::getJdbcUrl);
+        registry.add("spring.datasource.username", POSTGRES::getUsername);
+        registry.add("spring.datasource.password", POSTGRES::getPassword);
+        registry.add("spring.datasource.driver-class-name", () -> "org.postgresql.Driver");
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PendingTransactionSweeper pendingTransactionSweeper;
+
+    @BeforeEach
+    void seed() {
+        jdbcTemplate.execute("TRUNCATE transactions, cards, users CASCADE");
+        jdbcTemplate.execute("""
+                INSERT INTO users (id, username, email, password, first_name, last_name, role, is_active)
+                SELECT g, 'user' || g, 'user' || g || '@example.com', 'x', 'First', 'Last', 'USER', true
+                FROM generate_series(1000, 20999) g""");
+        jdbcTemplate.execute("""
+                INSERT INTO cards (id, card_number, card_number_hash, last4, card_holder, expiry_date, status,
+                                   balance, owner_id, version)
+                SELECT g, lpad(g::text, 16, '0'), encode(sha256(g::text::bytea), 'hex'), right(lpad(g::text, 16, '0'), 4),
+                       'HOLDER ' || g,
+                       current_date + (g % 1500 - 300),
+                       CASE WHEN g % 1500 < 300 THEN 'EXPIRED' WHEN g % 10 = 0 THEN 'BLOCKED' ELSE 'ACTIVE' END,
+                       100, 1000 + g % 20000, 0
+                FROM generate_series(1000, 60999) g""");
+        jdbcTemplate.execute("""
+                INSERT INTO transactions (id, amount, type, status, from_card_id, to_card_id, user_id,
+                                          created_at, updated_at)
+                SELECT g, 10, 'TRANSFER',
+                       CASE WHEN g % 100 = 0 THEN 'PENDING' WHEN g % 20 = 0 THEN 'FAILED' ELSE 'COMPLETED' END,
+                       1000 + g % 60000, 1000 + (g + 1) % 60000, 1000 + g % 20000,
+                       now() - g * interval '1 second', now()
+                FROM generate_series(1, 500000) g""");
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    @Test
+    void hotQueries_UseIndexes() {
+        // Given
+        LocalDateTime now = LocalDateTime.now();
+        Map<String, Runnable> userQueries = new LinkedHashMap<>();
+        userQueries.put("TransactionRepository.findByUserAndFilters", () -> transactionRepository.findByUserAndFilters(
+                1234L, Transaction.TransactionType.TRANSFER, Transaction.TransactionStatus.COMPLETED,
+                now.minusDays(7), now, PageRequest.of(0, 20)));
+        userQueries.put("TransactionRepository.findHistoryByUserIdBefore", () -> transactionRepository
+                .findHistoryByUserIdBefore(1234L, now.minusDays(1), 86400L, PageRequest.of(0, 21)));
+        userQueries.put("TransactionRepository.findByUserIdAndIdempotencyKey",
+                () -> transactionRepository.findByUserIdAndIdempotencyKey(1234L, "key-1"));
+        userQueries.put("TransactionRepository.findByCard",
+                () -> transactionRepository.findByCard(cardRepository.getReferenceById(5000L)));
+        userQueries.put("CardRepository.findByOwnerAndFilters", () -> cardRepository.findByOwnerAndFilters(
+                1234L, Card.CardStatus.ACTIVE, null, PageRequest.of(0, 20)));
+        userQueries.put("CardRepository.findActiveCardsByOwner", () -> cardRepository.findActiveCardsByOwner(
+                userRepository.getReferenceById(1234L), LocalDate.now()));
+        userQueries.put("CardRepository.findIdsToExpire",
+                () -> cardRepository.findIdsToExpire(LocalDate.now(), PageRequest.of(0, 1000)));
+        userQueries.put("CardRepository.existsByCardNumberHash", () -> cardRepository.existsByCardNumberHash(
+                "5f6f4e3f1a0b8c6c0a9c1c3f6b1c0e9c8f1a2b3c4d5e6f708192a3b4c5d6e7f8"));
+        userQueries.put("CardRepository.findAllWithOwnerByIdIn",
+                () -> cardRepository.findAllWithOwnerByIdIn(Set.of(5000L, 5001L)));
+        // Runs last, since it marks the stale pending rows as failed
+        userQueries.put("PendingTransactionSweeper.sweep", pendingTransactionSweeper::sweep);
+
+        Map<String, Runnable> reportingQueries = new LinkedHashMap<>();
+        reportingQueries.put("TransactionRepository.findByFilters", () -> transactionRepository.findByFilters(
+                null, Transaction.TransactionStatus.FAILED, now.minusDays(1), now, null, PageRequest.of(0, 20)));
+
+        // When
+        Map<String, String> plans = new LinkedHashMap<>();
+        reportingQueries.forEach((name, query) -> plans.putAll(explainRecorded(name, query, CUSTOM_PLAN)));
+        userQueries.forEach((name, query) -> plans.putAll(explainRecorded(name, query, GENERIC_PLAN)));
+
+        // Then
+        assertAll(plans.entrySet().stream()
+                .map(entry -> () -> assertFalse(entry.getValue().contains("Seq Scan"),
+                        entry.getKey() + " falls back to a sequential scan:\n" + entry.getValue())));
+    }
+
+    private Map<String, String> explainRecorded(String name, Runnable query, String planCacheMode) {
+        List<RecordedStatement> statements = new ArrayList<>();
+        StatementRecorder.start(statements);
+        try {
+            transactionTemplate.executeWithoutResult(status -> query.run());
+        } finally {
+            StatementRecorder.stop();
+        }
+        Map<String, String> plans = new LinkedHashMap<>();
+        Set<String> explained = new HashSet<>();
+        for (RecordedStatement statement : statements) {
+            if (explained.add(statement.sql())) {
+                plans.put(name + " [" + statement.sql() + "]", explain(statement, planCacheMode));
+            }
+        }
+        return plans;
+    }
+
+    private String explain(RecordedStatement statement, String planCacheMode) {
+        return jdbcTemplate.execute((ConnectionCallback<String>) connection -> {
+            try (Statement explain = connection.createStatement()) {
+                explain.execute("SET plan_cache_mode = " + planCacheMode);
+                explain.execute("PREPARE plan_check" + statement.parameterTypes() + " AS " + statement.numberedSql());
+                List<String> lines = new ArrayList<>();
+                try (ResultSet rs = explain.executeQuery("EXPLAIN EXECUTE plan_check" + statement.parameterValues())) {
+                    while (rs.next()) {
+                        lines.add(rs.getString(1));
+                    }
+                }
+                explain.execute("DEALLOCATE plan_check");
+                explain.execute("RESET plan_cache_mode");
+                return lines.stream().collect(Collectors.joining("\n"));
+            }
+        });
+    }
+
+    record RecordedStatement(String sql, Map<Integer, BoundParameter> parameters) {
+
+        String numberedSql() {
+            StringBuilder numbered = new StringBuilder();
+            boolean quoted = false;
+            int index = 0;
+            for (char c : sql.toCharArray()) {
+                if (c == '\'') {
+                    quoted = !quoted;
+                }
+                if (c == '?' && !quoted) {
+                    numbered.append('$').append(++index);
+                } else {
+                    numbered.append(c);
+                }
+            }
+            return numbered.toString();
+        }
+
+        String parameterTypes() {
+            return parameters.isEmpty() ? "" : parameters.values().stream()
+                    .map(BoundParameter::type)
+                    .collect(Collectors.joining(", ", "(", ")"));
+        }
+
+        String parameterValues() {
+            return parameters.isEmpty() ? "" : parameters.values().stream()
+                    .map(BoundParameter::literal)
+                    .collect(Collectors.joining(", ", "(", ")"));
+        }
+    }
+
+    record BoundParameter(String type, Object value) {
+
+        String literal() {
+            if (value == null) {
+                return "NULL";
+            }
+            if (value instanceof Number || value instanceof Boolean) {
+                return value.toString();
+            }
+            return "'" + value.toString().replace("'", "''") + "'";
+        }
+
+        static BoundParameter of(Method setter, Object[] args) {
+            if (setter.getName().equals("setNull")) {
+                return new BoundParameter(typeOf((int) args[1]), null);
+            }
+            Object value = args[1];
+            if (setter.getName().equals("setObject") && args.length > 2 && args[2] instanceof Integer sqlType) {
+                return new BoundParameter(typeOf(sqlType), value);
+            }
+            return new BoundParameter(switch (setter.getName()) {
+                case "setLong" -> "bigint";
+                case "setInt" -> "integer";
+                case "setShort", "setByte" -> "smallint";
+                case "setBoolean" -> "boolean";
+                case "setBigDecimal" -> "numeric";
+                case "setDouble" -> "double precision";
+                case "setFloat" -> "real";
+                case "setDate" -> "date";
+                case "setTimestamp" -> "timestamp";
+                case "setTime" -> "time";
+                case "setString", "setNString" -> "varchar";
+                default -> typeOf(value);
+            }, value);
+        }
+
+        private static String typeOf(int sqlType) {
+            return switch (sqlType) {
+                case Types.BIGINT -> "bigint";
+                case Types.INTEGER -> "integer";
+                case Types.SMALLINT, Types.TINYINT -> "smallint";
+                case Types.BOOLEAN, Types.BIT -> "boolean";
+                case Types.NUMERIC, Types.DECIMAL -> "numeric";
+                case Types.DOUBLE, Types.FLOAT -> "double precision";
+                case Types.REAL -> "real";
+                case Types.DATE -> "date";
+                case Types.TIMESTAMP -> "timestamp";
+                case Types.TIMESTAMP_WITH_TIMEZONE -> "timestamptz";
+                case Types.TIME -> "time";
+                case Types.VARCHAR, Types.CHAR, Types.LONGVARCHAR, Types.NVARCHAR, Types.NCHAR -> "varchar";
+                default -> "unknown";
+            };
+        }
+
+        private static String typeOf(Object value) {
+            if (value instanceof Long) {
+                return "bigint";
+            }
+            if (value instanceof Integer) {
+                return "integer";
+            }
+            if (value instanceof BigDecimal) {
+                return "numeric";
+            }
+            if (value instanceof Boolean) {
+                return "boolean";
+            }
+            if (value instanceof LocalDate || value instanceof java.sql.Date) {
+                return "date";
+            }
+            if (value instanceof LocalDateTime || value instanceof java.sql.Timestamp) {
+                return "timestamp";
+            }
+            if (value instanceof Temporal) {
+                return "timestamptz";
+            }
+            if (value instanceof String || value instanceof Enum<?>) {
+                return "varchar";
+            }
+            return "unknown";
+        }
+    }
+
+    /**
+     * Wraps the application DataSource so every prepared statement executed while
+     * recording is captured with the SQL and the parameters bound to it.
+     */
+    static class StatementRecorder {
+
+        private static volatile List<RecordedStatement> recording;
+
+        static void start(List<RecordedStatement> statements) {
+            recording = statements;
+        }
+
+        static void stop() {
+            recording = null;
+        }
+
+        static DataSource wrap(DataSource dataSource) {
+            return proxy(DataSource.class, dataSource, (method, args, result) ->
+                    result instanceof Connection connection ? wrap(connection) : result);
+        }
+
+        private static Connection wrap(Connection connection) {
+            return proxy(Connection.class, connection, (method, args, result) ->
+                    result instanceof PreparedStatement statement && args != null && args[0] instanceof String sql
+                            ? wrap(statement, sql)
+                            : result);
+        }
+
+        private static PreparedStatement wrap(PreparedStatement statement, String sql) {
+            Map<Integer, BoundParameter> parameters = new TreeMap<>();
+            return proxy(PreparedStatement.class, statement, (method, args, result) -> {
+                String name = method.getName();
+                if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+                    parameters.put(index, BoundParameter.of(method, args));
+                } else if (name.equals("clearParameters")) {
+                    parameters.clear();
+                } else if (name.startsWith("execute") && (args == null || args.length == 0)) {
+                    List<RecordedStatement> statements = recording;
+                    if (statements != null) {
+                        statements.add(new RecordedStatement(sql, new TreeMap<>(parameters)));
+                    }
+                }
+                return result;
+            });
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> T proxy(Class<T> type, T target, ResultHandler handler) {
+            return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+                try {
+                    if (method.getName().equals("unwrap") || method.getName().equals("isWrapperFor")) {
+                        return method.invoke(target, args);
+                    }
+                    return handler.handle(method, args, method.invoke(target, args));
+                } catch (InvocationTargetException e) {
+                    throw e.getTargetException();
+                }
+            });
+        }
+
+        @FunctionalInterface
+        interface ResultHandler {
+            Object handle(Method method, Object[] args, Object result);
+        }
+    }
+
+    @TestConfiguration
+    static class StatementRecorderConfig {
+
+        @Bean
+        static BeanPostProcessor statementRecordingDataSource() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return beanName.equals("dataSource") && bean instanceof DataSource dataSource
+                            ? StatementRecorder.wrap(dataSource)
+                            : bean;
+                }
+            };
+        }
+    }
+}
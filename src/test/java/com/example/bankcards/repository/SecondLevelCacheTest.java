@@ -0,0 +1,113 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class SecondLevelCacheTest {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private User owner;
+    private Card debited;
+    private Card untouched;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        owner = userRepository.save(new User("l2cache", "l2cache@example.com", "encodedPassword",
+                "Second", "Level", User.Role.USER));
+        debited = cardRepository.save(card("4300000000000001", "0001"));
+        untouched = cardRepository.save(card("4300000000000002", "0002"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        cardRepository.deleteAll();
+        userRepository.delete(owner);
+    }
+
+    @Test
+    void findById_RepeatedLookup_IsServedFromCache() {
+        // Given
+        cardRepository.findById(debited.getId());
+        statistics.clear();
+
+        // When
+        Card cached = cardRepository.findById(debited.getId()).orElseThrow();
+
+        // Then
+        assertEquals("0001", cached.getLast4());
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertEquals(1, statistics.getSecondLevelCacheHitCount());
+    }
+
+    @Test
+    void debitIfSufficient_EvictsOnlyTheUpdatedCard() {
+        // Given
+        cardRepository.findById(debited.getId());
+        cardRepository.findById(untouched.getId());
+
+        // When
+        int updated = transactionTemplate.execute(status -> cardRepository.debitIfSufficient(
+                debited.getId(), new BigDecimal("40.00"), LocalDate.now(), LocalDateTime.now()));
+
+        // Then
+        assertEquals(1, updated);
+        statistics.clear();
+        assertEquals(new BigDecimal("60.00"), cardRepository.findById(debited.getId()).orElseThrow().getBalance());
+        assertEquals(new BigDecimal("100.00"), cardRepository.findById(untouched.getId()).orElseThrow().getBalance());
+        assertEquals(1, statistics.getSecondLevelCacheMissCount());
+        assertEquals(1, statistics.getSecondLevelCacheHitCount());
+    }
+
+    @Test
+    void findByUsername_RepeatedLookup_IsResolvedFromNaturalIdCache() {
+        // Given
+        userRepository.findByUsername("l2cache");
+        statistics.clear();
+
+        // When
+        User cached = userRepository.findByUsername("l2cache").orElseThrow();
+
+        // Then
+        assertEquals(owner.getId(), cached.getId());
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertEquals(1, statistics.getNaturalIdCacheHitCount());
+    }
+
+    private Card card(String cardNumber, String last4) {
+        Card card = new Card(cardNumber, "SECOND LEVEL", LocalDate.now().plusYears(3), owner);
+        card.setBalance(new BigDecimal("100.00"));
+        card.setLast4(last4);
+        return card;
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.bankcards.security;
+
+import com.example.bankcards.exception.TooManyRequestsException;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoginRateLimiterTest {
+
+    private final LoginRateLimiter loginRateLimiter = new LoginRateLimiter(3, 3, 10, 10, 1000);
+
+    @Test
+    void acquire_UsernameOverCapacity_IsRejectedWithRetryAfter() {
+        // Given
+        for (int i = 0; i < 3; i++) {
+            loginRateLimiter.acquire("alice", "10.0.0." + i);
+        }
+
+        // When
+        TooManyRequestsException exception = assertThrows(TooManyRequestsException.class,
+                () -> loginRateLimiter.acquire("ALICE", "10.0.0.9"));
+
+        // Then
+        assertTrue(exception.getRetryAfter().toSeconds() > 0);
+        assertDoesNotThrow(() -> loginRateLimiter.acquire("bob", "10.0.0.9"));
+    }
+
+    @Test
+    void acquire_IpOverCapacity_IsRejectedForAnyUsername() {
+        // Given
+        for (int i = 0; i < 10; i++) {
+            loginRateLimiter.acquire("user" + i, "192.168.1.1");
+        }
+
+        // When / Then
+        assertThrows(TooManyRequestsException.class, () -> loginRateLimiter.acquire("someone", "192.168.1.1"));
+        assertDoesNotThrow(() -> loginRateLimiter.acquire("someone", "192.168.1.2"));
+    }
+
+    @Test
+    void tokenBucket_RefillsOverTime() {
+        // Given
+        long nanosPerToken = TimeUnit.SECONDS.toNanos(20);
+        LoginRateLimiter.TokenBucket bucket = new LoginRateLimiter.TokenBucket(2, nanosPerToken);
+        long now = System.nanoTime();
+        assertEquals(0, bucket.tryConsume(now));
+        assertEquals(0, bucket.tryConsume(now));
+
+        // When
+        long wait = bucket.tryConsume(now);
+
+        // Then
+        assertEquals(nanosPerToken, wait);
+        assertEquals(0, bucket.tryConsume(now + wait));
+    }
+}
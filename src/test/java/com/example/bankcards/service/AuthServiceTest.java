@@ -0,0 +1,78 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.CacheConfig;
+import com.example.bankcards.dto.LoginRequest;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:auth-rehash",
+        "bank.auth.bcrypt.strength=5"
+})
+@ActiveProfiles("test")
+class AuthServiceTest {
+
+    @Autowired
+    private AuthService authService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    private User user;
+
+    @AfterEach
+    void tearDown() {
+        userRepository.deleteById(user.getId());
+        cacheManager.getCache(CacheConfig.USERS_BY_USERNAME).clear();
+    }
+
+    @Test
+    void authenticate_HashWithLowerCost_IsRehashedToConfiguredCost() {
+        // Given
+        String legacyHash = new BCryptPasswordEncoder(4).encode("password123");
+        user = userRepository.save(new User("rehash", "rehash@example.com", legacyHash,
+                "Rehash", "User", User.Role.USER));
+        LoginRequest loginRequest = new LoginRequest("rehash", "password123");
+
+        // When
+        authService.authenticate(loginRequest, "127.0.0.1");
+
+        // Then
+        String storedHash = userRepository.findById(user.getId()).orElseThrow().getPassword();
+        assertNotEquals(legacyHash, storedHash);
+        assertTrue(storedHash.startsWith("$2a$05$"));
+        assertTrue(passwordEncoder.matches("password123", storedHash));
+        assertFalse(passwordEncoder.upgradeEncoding(storedHash));
+        assertNotNull(authService.authenticate(loginRequest, "127.0.0.1").getToken());
+    }
+
+    @Test
+    void authenticate_HashWithHigherCost_IsKept() {
+        // Given
+        String strongerHash = new BCryptPasswordEncoder(6).encode("password123");
+        user = userRepository.save(new User("stronger", "stronger@example.com", strongerHash,
+                "Stronger", "User", User.Role.USER));
+
+        // When
+        authService.authenticate(new LoginRequest("stronger", "password123"), "127.0.0.1");
+
+        // Then
+        assertEquals(strongerHash, userRepository.findById(user.getId()).orElseThrow().getPassword());
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.JobLock;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.JobLockRepository;
+import com.example.bankcards.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class CardExpiryServiceTest {
+
+    @Autowired
+    private CardExpiryService cardExpiryService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private JobLockRepository jobLockRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User owner;
+    private Card lapsed;
+    private Card valid;
+
+    @BeforeEach
+    void setUp() {
+        owner = userRepository.save(new User("expiry", "expiry@example.com", "encodedPassword",
+                "Card", "Expiry", User.Role.USER));
+        lapsed = card("0001", LocalDate.now().minusDays(1));
+        valid = card("0002", LocalDate.now().plusYears(1));
+        // Loaded once so the stale ACTIVE state sits in the second-level cache
+        cardRepository.findById(lapsed.getId());
+    }
+
+    @AfterEach
+    void tearDown() {
+        jobLockRepository.deleteAll();
+        cardRepository.deleteAll();
+        userRepository.delete(owner);
+    }
+
+    @Test
+    void updateExpiredCards_MarksOnlyLapsedCards() {
+        // When
+        int expired = cardExpiryService.updateExpiredCards();
+
+        // Then
+        assertEquals(1, expired);
+        assertEquals(Card.CardStatus.EXPIRED, cardRepository.findById(lapsed.getId()).orElseThrow().getStatus());
+        assertEquals(Card.CardStatus.ACTIVE, cardRepository.findById(valid.getId()).orElseThrow().getStatus());
+        assertEquals(0, cardExpiryService.updateExpiredCards());
+    }
+
+    @Test
+    void updateExpiredCardsInBackground_LeaseHeldByAnotherNode_Skips() {
+        // Given
+        jdbcTemplate.update("INSERT INTO job_locks (name, locked_until, locked_by, fencing_token) VALUES (?, ?, ?, 1)",
+                "card-expiry", LocalDateTime.now().plusMinutes(5), "other-node");
+
+        // When
+        cardExpiryService.updateExpiredCardsInBackground();
+
+        // Then
+        assertEquals(Card.CardStatus.ACTIVE, cardRepository.findById(lapsed.getId()).orElseThrow().getStatus());
+    }
+
+    @Test
+    void updateExpiredCardsInBackground_FreeLease_RunsAndReleasesIt() {
+        // When
+        cardExpiryService.updateExpiredCardsInBackground();
+
+        // Then
+        assertEquals(Card.CardStatus.EXPIRED, cardRepository.findById(lapsed.getId()).orElseThrow().getStatus());
+        JobLock lock = jobLockRepository.findById("card-expiry").orElseThrow();
+        assertFalse(lock.getLockedUntil().isAfter(LocalDateTime.now()));
+        assertEquals(1, lock.getFencingToken());
+    }
+
+    private Card card(String last4, LocalDate expiryDate) {
+        Card card = new Card("460000000000" + last4, "CARD EXPIRY", expiryDate, owner);
+        card.setLast4(last4);
+        return cardRepository.save(card);
+    }
+}
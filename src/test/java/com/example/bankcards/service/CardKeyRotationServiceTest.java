@@ -0,0 +1,149 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.CardKeyRotationRepository;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.util.EncryptionUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.doAnswer;
+
+// Own database: this context recreates the schema, which would break the context shared by the other tests
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:keyrotation",
+        "bank.card-encryption.keys=1:2vuvtXh0NDepAqB4wZmxF3/I2rM1WKsnZrgtjN+xGTI=,2:q5NJ0vQ1oW9bS6m3XyZk2HcT8dLr4eFg7uVa1Pj0iYs=",
+        "bank.card-encryption.active-key-version=2",
+        "bank.card-encryption.rotation.enabled=false"
+})
+@ActiveProfiles("test")
+class CardKeyRotationServiceTest {
+
+    @Autowired
+    private CardKeyRotationService cardKeyRotationService;
+
+    @Autowired
+    private CardKeyRotationRepository cardKeyRotationRepository;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EncryptionUtil encryptionUtil;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @SpyBean
+    private JobLockService jobLockService;
+
+    private EncryptionUtil previousKeys;
+    private User owner;
+    private Card card;
+
+    @BeforeEach
+    void setUp() {
+        owner = userRepository.save(new User("rotation", "rotation@example.com", "encodedPassword",
+                "Key", "Rotation", User.Role.USER));
+
+        previousKeys = new EncryptionUtil();
+        ReflectionTestUtils.setField(previousKeys, "cardKeysSpec", "1:2vuvtXh0NDepAqB4wZmxF3/I2rM1WKsnZrgtjN+xGTI=");
+        ReflectionTestUtils.setField(previousKeys, "activeKeyVersion", 1);
+        ReflectionTestUtils.setField(previousKeys, "indexKeyBase64", "T5eiEQ5mMO1GCCp7aXA+7zeGl7TWGNB4tOSUsFc9xwg=");
+        ReflectionTestUtils.invokeMethod(previousKeys, "init");
+
+        card = new Card(previousKeys.encryptCardNumber("4276123456789012"), "KEY ROTATION",
+                LocalDate.now().plusYears(3), owner);
+        card.setKeyVersion(1);
+        card.setCardNumberHash(encryptionUtil.hashCardNumber("4276123456789012"));
+        card.setLast4("9012");
+        card = cardRepository.save(card);
+    }
+
+    @AfterEach
+    void tearDown() {
+        cardKeyRotationRepository.deleteAll();
+        cardRepository.deleteAll(cardRepository.findByOwner(owner));
+        userRepository.delete(owner);
+    }
+
+    @Test
+    void rotate_CardUnderPreviousKey_IsReencryptedAndCheckpointed() {
+        // Given
+        String previousCiphertext = card.getCardNumber();
+
+        // When
+        int rotated = cardKeyRotationService.rotate();
+
+        // Then
+        assertEquals(1, rotated);
+        Card stored = cardRepository.findById(card.getId()).orElseThrow();
+        assertEquals(2, stored.getKeyVersion());
+        assertNotEquals(previousCiphertext, stored.getCardNumber());
+        assertEquals("4276123456789012", encryptionUtil.decryptCardNumber(stored.getCardNumber(), 2));
+        assertEquals(card.getId(), cardKeyRotationRepository.findById(2).orElseThrow().getLastCardId());
+        assertEquals(0, cardKeyRotationService.rotate());
+    }
+
+    @Test
+    void rotate_CardChangedWhileRotating_CheckpointStaysInFrontOfIt() {
+        // Given
+        Card later = new Card(previousKeys.encryptCardNumber("4276123456789013"), "KEY ROTATION",
+                LocalDate.now().plusYears(3), owner);
+        later.setKeyVersion(1);
+        later.setCardNumberHash(encryptionUtil.hashCardNumber("4276123456789013"));
+        later.setLast4("9013");
+        later = cardRepository.save(later);
+        // Rewrites the first card between reading the chunk and updating it, so its guarded update misses
+        doAnswer(invocation -> {
+            jdbcTemplate.update("UPDATE cards SET card_number = ? WHERE id = ?",
+                    previousKeys.encryptCardNumber("4276123456789012"), card.getId());
+            return null;
+        }).doCallRealMethod().when(jobLockService).checkpoint();
+
+        // When
+        int rotated = cardKeyRotationService.rotate();
+
+        // Then
+        assertEquals(1, rotated);
+        assertEquals(2, cardRepository.findById(later.getId()).orElseThrow().getKeyVersion());
+        assertEquals(1, cardRepository.findById(card.getId()).orElseThrow().getKeyVersion());
+        assertTrue(cardKeyRotationRepository.findById(2).orElseThrow().getLastCardId() < card.getId());
+
+        assertEquals(1, cardKeyRotationService.rotate());
+        assertEquals(2, cardRepository.findById(card.getId()).orElseThrow().getKeyVersion());
+        assertEquals(card.getId(), cardKeyRotationRepository.findById(2).orElseThrow().getLastCardId());
+    }
+
+    @Test
+    void save_CardLoadedBeforeRotation_FailsAndKeepsTheNewKey() {
+        // Given
+        Card stale = cardRepository.findById(card.getId()).orElseThrow();
+        cardKeyRotationService.rotate();
+
+        // When
+        stale.setStatus(Card.CardStatus.BLOCKED);
+        assertThrows(OptimisticLockingFailureException.class, () -> cardRepository.save(stale));
+
+        // Then
+        Card stored = cardRepository.findById(card.getId()).orElseThrow();
+        assertEquals(2, stored.getKeyVersion());
+        assertEquals("4276123456789012", encryptionUtil.decryptCardNumber(stored.getCardNumber(), 2));
+    }
+}
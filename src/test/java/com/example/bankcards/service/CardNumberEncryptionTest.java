@@ -0,0 +1,122 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardDto;
+import com.example.bankcards.dto.CardNumberResponse;
+import com.example.bankcards.dto.CreateCardRequest;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.BusinessException;
+import com.example.bankcards.exception.UnauthorizedException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.util.EncryptionUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class CardNumberEncryptionTest {
+
+    @Autowired
+    private CardService cardService;
+
+    @Autowired
+    private CardNumberBackfillService cardNumberBackfillService;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EncryptionUtil encryptionUtil;
+
+    private User owner;
+
+    @BeforeEach
+    void setUp() {
+        owner = userRepository.save(new User("cardowner", "cardowner@example.com", "encodedPassword",
+                "Card", "Owner", User.Role.USER));
+    }
+
+    @AfterEach
+    void tearDown() {
+        cardRepository.deleteAll(cardRepository.findByOwner(owner));
+        userRepository.delete(owner);
+    }
+
+    @Test
+    void createCard_SameNumberTwice_IsRejectedByBlindIndex() {
+        // Given
+        CreateCardRequest request = new CreateCardRequest("4276123456789012", "CARD OWNER",
+                LocalDate.now().plusYears(3), owner.getId());
+        CardDto created = cardService.createCard(request);
+
+        // When / Then
+        assertThrows(BusinessException.class, () -> cardService.createCard(request));
+        Card stored = cardRepository.findByCardNumberHash(encryptionUtil.hashCardNumber("4276123456789012"))
+                .orElseThrow();
+        assertEquals(created.getId(), stored.getId());
+        assertFalse(stored.getCardNumber().contains("4276123456789012"));
+        assertEquals("4276123456789012", encryptionUtil.decryptCardNumber(stored.getCardNumber(), stored.getKeyVersion()));
+        assertNull(created.getCardNumber());
+        assertEquals("**** **** **** 9012", created.getMaskedCardNumber());
+    }
+
+    @Test
+    void revealCardNumber_OwnerGetsFullNumber_OthersAreRefused() {
+        // Given
+        CardDto created = cardService.createCard(new CreateCardRequest("4276123456789012", "CARD OWNER",
+                LocalDate.now().plusYears(3), owner.getId()));
+
+        // When
+        CardNumberResponse revealed = cardService.revealCardNumber(created.getId(), "cardowner", false);
+
+        // Then
+        assertEquals("4276123456789012", revealed.getCardNumber());
+        assertThrows(UnauthorizedException.class,
+                () -> cardService.revealCardNumber(created.getId(), "someoneelse", false));
+        assertEquals("**** **** **** 9012", cardService.getCardById(created.getId()).getMaskedCardNumber());
+    }
+
+    @Test
+    void backfill_LegacyShiftedNumber_IsReencryptedAndIndexed() {
+        // Given
+        Card legacy = cardRepository.save(new Card("7;<9648789:;<345", "CARD OWNER",
+                LocalDate.now().plusYears(3), owner));
+
+        // When
+        int updated = cardNumberBackfillService.backfill();
+
+        // Then
+        assertEquals(1, updated);
+        Card migrated = cardRepository.findById(legacy.getId()).orElseThrow();
+        assertNotEquals("7;<9648789:;<345", migrated.getCardNumber());
+        assertEquals("4896315456789012", encryptionUtil.decryptCardNumber(migrated.getCardNumber(), migrated.getKeyVersion()));
+        assertEquals(encryptionUtil.hashCardNumber("4896315456789012"), migrated.getCardNumberHash());
+        assertEquals("9012", migrated.getLast4());
+        assertEquals(0, cardNumberBackfillService.backfill());
+    }
+
+    @Test
+    void init_MissingKeys_FailsStartup() {
+        // Given
+        EncryptionUtil unconfigured = new EncryptionUtil();
+        ReflectionTestUtils.setField(unconfigured, "cardKeysSpec", "");
+        ReflectionTestUtils.setField(unconfigured, "activeKeyVersion", 1);
+        ReflectionTestUtils.setField(unconfigured, "indexKeyBase64", "");
+
+        // When / Then
+        assertThrows(IllegalStateException.class, () -> ReflectionTestUtils.invokeMethod(unconfigured, "init"));
+    }
+}
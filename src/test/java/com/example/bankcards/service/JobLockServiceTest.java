@@ -0,0 +1,95 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.repository.JobLockRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Other scheduled jobs are off, so the routing counters only move for the lock calls
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:job-locks",
+        "bank.transfer.pending-sweep.enabled=false",
+        "bank.card-encryption.rotation.enabled=false",
+        "bank.cards.expiry.cron=-"
+})
+@ActiveProfiles("test")
+class JobLockServiceTest {
+
+    @Autowired
+    private JobLockService jobLockService;
+
+    @Autowired
+    private JobLockRepository jobLockRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @AfterEach
+    void tearDown() {
+        jobLockRepository.deleteAll();
+    }
+
+    @Test
+    void tryAcquire_HeldLease_IsRefusedUntilReleased() {
+        // Given
+        JobLockService.Lease lease = jobLockService.tryAcquire("job", Duration.ofMinutes(1)).orElseThrow();
+
+        // When
+        Optional<JobLockService.Lease> whileHeld = jobLockService.tryAcquire("job", Duration.ofMinutes(1));
+        jobLockService.release(lease);
+        Optional<JobLockService.Lease> afterRelease = jobLockService.tryAcquire("job", Duration.ofMinutes(1));
+
+        // Then
+        assertTrue(whileHeld.isEmpty());
+        assertTrue(afterRelease.isPresent());
+        assertTrue(afterRelease.get().getToken() > lease.getToken());
+    }
+
+    @Test
+    void renew_AfterTakeover_FailsForStaleHolder() {
+        // Given
+        JobLockService.Lease stale = jobLockService.tryAcquire("job", Duration.ofMinutes(1)).orElseThrow();
+        // The holder stalls past its lease and another node takes over
+        jdbcTemplate.update("UPDATE job_locks SET locked_until = ? WHERE name = 'job'", LocalDateTime.now().minusSeconds(1));
+        JobLockService.Lease current = jobLockService.tryAcquire("job", Duration.ofMinutes(1)).orElseThrow();
+
+        // When
+        boolean staleRenewed = jobLockService.renew(stale);
+
+        // Then
+        assertFalse(staleRenewed);
+        assertTrue(jobLockService.renew(current));
+    }
+
+    @Test
+    void tryAcquire_NewLock_ChecksForTheRowOnThePrimary() {
+        // Given
+        double readOnlyRoutesBefore = readOnlyRoutes();
+
+        // When
+        Optional<JobLockService.Lease> lease = jobLockService.tryAcquire("job", Duration.ofMinutes(1));
+
+        // Then
+        assertTrue(lease.isPresent());
+        assertEquals(readOnlyRoutesBefore, readOnlyRoutes());
+    }
+
+    // Read-only transactions, which would go to the replica if one were configured
+    private double readOnlyRoutes() {
+        return meterRegistry.get("datasource.routing").tag("reason", "replica-unavailable").counter().count()
+                + meterRegistry.get("datasource.routing").tag("reason", "read-only").counter().count();
+    }
+}
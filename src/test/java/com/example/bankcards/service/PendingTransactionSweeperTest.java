@@ -0,0 +1,139 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.Transaction;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.TransactionRepository;
+import com.example.bankcards.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class PendingTransactionSweeperTest {
+
+    @Autowired
+    private PendingTransactionSweeper pendingTransactionSweeper;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private User owner;
+    private Card card;
+
+    @BeforeEach
+    void setUp() {
+        owner = userRepository.save(new User("sweeper", "sweeper@example.com", "encodedPassword",
+                "Pending", "Sweeper", User.Role.USER));
+        card = new Card("4500000000000001", "PENDING SWEEPER", LocalDate.now().plusYears(3), owner);
+        card.setLast4("0001");
+        card = cardRepository.save(card);
+    }
+
+    @AfterEach
+    void tearDown() {
+        transactionRepository.deleteAll();
+        cardRepository.deleteAll();
+        userRepository.delete(owner);
+    }
+
+    @Test
+    void sweep_FailsOnlyStalePendingTransactions() {
+        // Given
+        Transaction stale = pending(LocalDateTime.now().minusHours(2));
+        Transaction recent = pending(LocalDateTime.now().minusMinutes(5));
+        double failedBefore = meterRegistry.get("transactions.pending.failed").counter().count();
+
+        // When
+        int swept = pendingTransactionSweeper.sweep();
+
+        // Then
+        assertEquals(1, swept);
+        assertEquals(Transaction.TransactionStatus.FAILED, statusOf(stale));
+        assertEquals(Transaction.TransactionStatus.PENDING, statusOf(recent));
+        assertEquals(failedBefore + 1, meterRegistry.get("transactions.pending.failed").counter().count());
+        assertEquals(0, meterRegistry.get("transactions.pending.backlog").gauge().value());
+    }
+
+    @Test
+    void sweep_SkipsRowsLockedByAnotherNode() throws Exception {
+        // Given
+        Transaction locked = pending(LocalDateTime.now().minusHours(2));
+        Transaction free = pending(LocalDateTime.now().minusHours(3));
+        CountDownLatch lockHeld = new CountDownLatch(1);
+        CountDownLatch sweepDone = new CountDownLatch(1);
+        CompletableFuture<Void> otherNode = CompletableFuture.runAsync(() ->
+                transactionTemplate.executeWithoutResult(status -> {
+                    jdbcTemplate.queryForList("SELECT id FROM transactions WHERE id = ? FOR UPDATE", locked.getId());
+                    lockHeld.countDown();
+                    await(sweepDone);
+                }));
+        assertTrue(lockHeld.await(10, TimeUnit.SECONDS));
+
+        // When
+        int swept;
+        try {
+            swept = pendingTransactionSweeper.sweep();
+        } finally {
+            sweepDone.countDown();
+            otherNode.get(10, TimeUnit.SECONDS);
+        }
+
+        // Then
+        assertEquals(1, swept);
+        assertEquals(Transaction.TransactionStatus.FAILED, statusOf(free));
+        assertEquals(Transaction.TransactionStatus.PENDING, statusOf(locked));
+        assertEquals(1, meterRegistry.get("transactions.pending.backlog").gauge().value());
+    }
+
+    private Transaction pending(LocalDateTime createdAt) {
+        Transaction transaction = transactionRepository.save(
+                new Transaction(BigDecimal.TEN, Transaction.TransactionType.TRANSFER, card, card, owner));
+        jdbcTemplate.update("UPDATE transactions SET created_at = ? WHERE id = ?", createdAt, transaction.getId());
+        return transaction;
+    }
+
+    private Transaction.TransactionStatus statusOf(Transaction transaction) {
+        return transactionRepository.findById(transaction.getId()).orElseThrow().getStatus();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
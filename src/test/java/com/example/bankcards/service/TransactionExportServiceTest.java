@@ -0,0 +1,136 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.TransactionRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Comparator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class TransactionExportServiceTest {
+
+    @Autowired
+    private TransactionExportService transactionExportService;
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private User owner;
+
+    @BeforeEach
+    void setUp() {
+        owner = userRepository.save(new User("exporter", "exporter@example.com", "encodedPassword",
+                "Export", "User", User.Role.USER));
+
+        Card fromCard = new Card("4200000000000001", "EXPORT USER", LocalDate.now().plusYears(3), owner);
+        fromCard.setBalance(new BigDecimal("100.00"));
+        fromCard = cardRepository.save(fromCard);
+        Card toCard = cardRepository.save(
+                new Card("4200000000000002", "EXPORT USER", LocalDate.now().plusYears(3), owner));
+
+        transactionService.transferBetweenCards(
+                new TransferRequest(new BigDecimal("1.00"), fromCard.getId(), toCard.getId(), "rent, \"march\""),
+                owner.getId(), null);
+        transactionService.transferBetweenCards(
+                new TransferRequest(new BigDecimal("2.00"), fromCard.getId(), toCard.getId(), "groceries"),
+                owner.getId(), null);
+    }
+
+    @AfterEach
+    void tearDown() {
+        transactionRepository.deleteAll();
+        cardRepository.deleteAll();
+        userRepository.delete(owner);
+    }
+
+    @Test
+    void exportUserTransactions_Csv_WritesHeaderAndEscapedRowsOldestFirst() throws Exception {
+        // Given
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // When
+        transactionExportService.exportUserTransactions(owner.getId(), null, null, null, null,
+                TransactionExportService.Format.CSV, out);
+
+        // Then
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(3, lines.length);
+        assertTrue(lines[0].startsWith("id,createdAt"));
+        assertTrue(lines[1].contains(",\"rent, \"\"march\"\"\","));
+        assertTrue(lines[2].contains(",groceries,"));
+        assertTrue(lines[2].endsWith(",exporter"));
+    }
+
+    @Test
+    void exportUserTransactions_Csv_NeutralizesFormulas() throws Exception {
+        // Given
+        Card[] cards = cardRepository.findByOwner(owner).stream()
+                .sorted(Comparator.comparing(Card::getId))
+                .toArray(Card[]::new);
+        transactionService.transferBetweenCards(
+                new TransferRequest(new BigDecimal("3.00"), cards[0].getId(), cards[1].getId(), "=HYPERLINK(\"x\")"),
+                owner.getId(), null);
+        transactionService.transferBetweenCards(
+                new TransferRequest(new BigDecimal("4.00"), cards[0].getId(), cards[1].getId(), "@SUM(A1)"),
+                owner.getId(), null);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // When
+        transactionExportService.exportUserTransactions(owner.getId(), null, null, null, null,
+                TransactionExportService.Format.CSV, out);
+
+        // Then
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(5, lines.length);
+        assertTrue(lines[3].contains(",\"'=HYPERLINK(\"\"x\"\")\","));
+        assertTrue(lines[4].contains(",\"'@SUM(A1)\","));
+    }
+
+    @Test
+    void exportUserTransactions_Ndjson_WritesOneJsonObjectPerLine() throws Exception {
+        // Given
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // When
+        transactionExportService.exportUserTransactions(owner.getId(), null, null, null, null,
+                TransactionExportService.Format.NDJSON, out);
+
+        // Then
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lines.length);
+        JsonNode first = objectMapper.readTree(lines[0]);
+        assertEquals("rent, \"march\"", first.get("description").asText());
+        assertEquals("COMPLETED", first.get("status").asText());
+        assertEquals(0, new BigDecimal("2.00").compareTo(objectMapper.readTree(lines[1]).get("amount").decimalValue()));
+    }
+}
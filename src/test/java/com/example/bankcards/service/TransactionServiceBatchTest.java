@@ -0,0 +1,102 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.BatchTransferResponse;
+import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.UnauthorizedException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.TransactionRepository;
+import com.example.bankcards.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class TransactionServiceBatchTest {
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    private User owner;
+    private User stranger;
+    private Card firstCard;
+    private Card secondCard;
+    private Card strangerCard;
+
+    @BeforeEach
+    void setUp() {
+        owner = userRepository.save(new User("batchowner", "batchowner@example.com", "encodedPassword",
+                "Batch", "Owner", User.Role.USER));
+        stranger = userRepository.save(new User("stranger", "stranger@example.com", "encodedPassword",
+                "Some", "Stranger", User.Role.USER));
+
+        firstCard = new Card("4200000000000001", "BATCH OWNER", LocalDate.now().plusYears(3), owner);
+        firstCard.setBalance(new BigDecimal("100.00"));
+        firstCard = cardRepository.save(firstCard);
+        secondCard = cardRepository.save(
+                new Card("4200000000000002", "BATCH OWNER", LocalDate.now().plusYears(3), owner));
+        strangerCard = cardRepository.save(
+                new Card("4200000000000003", "SOME STRANGER", LocalDate.now().plusYears(3), stranger));
+    }
+
+    @AfterEach
+    void tearDown() {
+        transactionRepository.deleteAll();
+        cardRepository.deleteAll();
+        userRepository.deleteAll(List.of(owner, stranger));
+    }
+
+    @Test
+    void transferBatch_AppliesItemsInOrder() {
+        // Given: the third item only succeeds if the second one was applied before it
+        List<TransferRequest> transfers = List.of(
+                new TransferRequest(new BigDecimal("80.00"), firstCard.getId(), secondCard.getId(), "first"),
+                new TransferRequest(new BigDecimal("50.00"), firstCard.getId(), secondCard.getId(), "overdraft"),
+                new TransferRequest(new BigDecimal("30.00"), secondCard.getId(), firstCard.getId(), "back"),
+                new TransferRequest(new BigDecimal("10.00"), firstCard.getId(), firstCard.getId(), "same card"));
+
+        // When
+        BatchTransferResponse response = transactionService.transferBatch(transfers, owner.getId());
+
+        // Then
+        assertEquals(4, response.getTotal());
+        assertEquals(2, response.getCompleted());
+        assertEquals(List.of("COMPLETED", "FAILED", "COMPLETED", "FAILED"),
+                response.getResults().stream().map(result -> result.getStatus()).toList());
+        assertEquals(new BigDecimal("50.00"), cardRepository.findById(firstCard.getId()).orElseThrow().getBalance());
+        assertEquals(new BigDecimal("50.00"), cardRepository.findById(secondCard.getId()).orElseThrow().getBalance());
+        assertEquals(4, transactionRepository.count());
+    }
+
+    @Test
+    void transferBatch_ForeignCard_ThrowsException() {
+        // Given
+        List<TransferRequest> transfers = List.of(
+                new TransferRequest(new BigDecimal("10.00"), firstCard.getId(), secondCard.getId(), "ok"),
+                new TransferRequest(new BigDecimal("10.00"), firstCard.getId(), strangerCard.getId(), "foreign"));
+
+        // When & Then
+        assertThrows(UnauthorizedException.class, () -> transactionService.transferBatch(transfers, owner.getId()));
+        assertEquals(0, transactionRepository.count());
+    }
+}
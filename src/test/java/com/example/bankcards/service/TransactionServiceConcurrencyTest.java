@@ -0,0 +1,117 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.BusinessException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.TransactionRepository;
+import com.example.bankcards.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class TransactionServiceConcurrencyTest {
+
+    private static final int CARD_COUNT = 4;
+    private static final int TRANSFER_COUNT = 2000;
+    private static final int THREAD_COUNT = 16;
+    private static final BigDecimal INITIAL_BALANCE = new BigDecimal("1000.00");
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    private User owner;
+    private List<Long> cardIds;
+
+    @BeforeEach
+    void setUp() {
+        owner = userRepository.save(new User("concurrent", "concurrent@example.com", "encodedPassword",
+                "Concurrent", "User", User.Role.USER));
+
+        cardIds = new ArrayList<>();
+        for (int i = 0; i < CARD_COUNT; i++) {
+            Card card = new Card("400000000000000" + i, "CONCURRENT USER", LocalDate.now().plusYears(3), owner);
+            card.setBalance(INITIAL_BALANCE);
+            cardIds.add(cardRepository.save(card).getId());
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        transactionRepository.deleteAll();
+        cardRepository.deleteAll();
+        userRepository.delete(owner);
+    }
+
+    @Test
+    void parallelTransfers_PreserveTotalBalance() throws Exception {
+        // Given
+        ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+        AtomicInteger completed = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        Random random = new Random(42);
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < TRANSFER_COUNT; i++) {
+            int from = random.nextInt(CARD_COUNT);
+            int to = (from + 1 + random.nextInt(CARD_COUNT - 1)) % CARD_COUNT;
+            TransferRequest request = new TransferRequest(
+                    BigDecimal.valueOf(1 + random.nextInt(300)), cardIds.get(from), cardIds.get(to), "load test");
+
+            // When
+            futures.add(executor.submit(() -> {
+                try {
+                    transactionService.transferBetweenCards(request, owner.getId(), null);
+                    completed.incrementAndGet();
+                } catch (BusinessException e) {
+                    rejected.incrementAndGet();
+                }
+            }));
+        }
+
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+        // Then
+        List<Card> cards = cardRepository.findAllById(cardIds);
+        BigDecimal total = cards.stream()
+                .map(Card::getBalance)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+
+        assertEquals(INITIAL_BALANCE.multiply(BigDecimal.valueOf(CARD_COUNT)), total);
+        cards.forEach(card -> assertTrue(card.getBalance().signum() >= 0));
+        assertEquals(TRANSFER_COUNT, completed.get() + rejected.get());
+        assertTrue(completed.get() > 0);
+    }
+}
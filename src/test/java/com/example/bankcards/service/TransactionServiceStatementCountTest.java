@@ -0,0 +1,181 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CursorPage;
+import com.example.bankcards.dto.TransactionDto;
+import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.BusinessException;
+import com.example.bankcards.exception.TransferFailedException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.TransactionRepository;
+import com.example.bankcards.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class TransactionServiceStatementCountTest {
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private User owner;
+    private Card fromCard;
+    private Card toCard;
+
+    @BeforeEach
+    void setUp() {
+        owner = userRepository.save(new User("statements", "statements@example.com", "encodedPassword",
+                "Statement", "Counter", User.Role.USER));
+
+        fromCard = new Card("4100000000000001", "STATEMENT COUNTER", LocalDate.now().plusYears(3), owner);
+        fromCard.setBalance(new BigDecimal("500.00"));
+        fromCard.setLast4("0001");
+        fromCard = cardRepository.save(fromCard);
+
+        toCard = new Card("4100000000000002", "STATEMENT COUNTER", LocalDate.now().plusYears(3), owner);
+        toCard.setLast4("0002");
+        toCard = cardRepository.save(toCard);
+    }
+
+    @AfterEach
+    void tearDown() {
+        transactionRepository.deleteAll();
+        cardRepository.deleteAll();
+        userRepository.delete(owner);
+    }
+
+    @Test
+    void transferBetweenCards_ExecutesFourStatements() {
+        // Given
+        TransferRequest request = new TransferRequest(new BigDecimal("10.00"), fromCard.getId(), toCard.getId(), "counted");
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        // Warm up so that one-off work (e.g. id allocation) does not skew the count
+        transactionService.transferBetweenCards(request, owner.getId(), null);
+        statistics.clear();
+
+        // When
+        TransactionDto result = transactionService.transferBetweenCards(request, owner.getId(), null);
+
+        // Then: one fetch-join SELECT for both cards and owners, debit UPDATE, credit UPDATE, INSERT
+        assertEquals("COMPLETED", result.getStatus());
+        assertEquals(4, statistics.getPrepareStatementCount());
+        assertEquals(owner.getUsername(), result.getUsername());
+    }
+
+    @Test
+    void transferBetweenCards_RepeatedIdempotencyKey_ReturnsStoredTransferWithoutStatements() {
+        // Given
+        TransferRequest request = new TransferRequest(new BigDecimal("10.00"), fromCard.getId(), toCard.getId(), "retried");
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        TransactionDto first = transactionService.transferBetweenCards(request, owner.getId(), "retry-key-1");
+        statistics.clear();
+
+        // When
+        TransactionDto repeated = transactionService.transferBetweenCards(request, owner.getId(), "retry-key-1");
+
+        // Then
+        assertEquals(first.getId(), repeated.getId());
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertEquals(1, transactionRepository.count());
+        assertEquals(new BigDecimal("490.00"), cardRepository.findById(fromCard.getId()).orElseThrow().getBalance());
+    }
+
+    @Test
+    void transferBetweenCards_RepeatedIdempotencyKeyOfFailedTransfer_FailsTheSameWay() {
+        // Given
+        TransferRequest request = new TransferRequest(new BigDecimal("900.00"), fromCard.getId(), toCard.getId(), "too much");
+        TransferFailedException first = assertThrows(TransferFailedException.class,
+                () -> transactionService.transferBetweenCards(request, owner.getId(), "retry-key-2"));
+
+        // When
+        TransferFailedException repeated = assertThrows(TransferFailedException.class,
+                () -> transactionService.transferBetweenCards(request, owner.getId(), "retry-key-2"));
+
+        // Then
+        assertEquals(first.getMessage(), repeated.getMessage());
+        assertEquals(1, transactionRepository.count());
+        assertEquals(new BigDecimal("500.00"), cardRepository.findById(fromCard.getId()).orElseThrow().getBalance());
+    }
+
+    @Test
+    void transferBetweenCards_SameCard_IsRejected() {
+        // Given
+        TransferRequest request = new TransferRequest(new BigDecimal("10.00"), fromCard.getId(), fromCard.getId(), "self");
+
+        // When
+        BusinessException exception = assertThrows(BusinessException.class,
+                () -> transactionService.transferBetweenCards(request, owner.getId(), null));
+
+        // Then
+        assertEquals("Cannot transfer to the same card", exception.getMessage());
+        assertEquals(new BigDecimal("500.00"), cardRepository.findById(fromCard.getId()).orElseThrow().getBalance());
+    }
+
+    @Test
+    void getTransactionHistory_LoadsPageInOneStatement() {
+        // Given
+        TransferRequest request = new TransferRequest(new BigDecimal("10.00"), fromCard.getId(), toCard.getId(), "listed");
+        for (int i = 0; i < 5; i++) {
+            transactionService.transferBetweenCards(request, owner.getId(), null);
+        }
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        // When
+        CursorPage<TransactionDto> page = transactionService.getTransactionHistory(owner.getId(), null, 50);
+
+        // Then: cards and user come from the projection instead of lazy loads per row
+        assertEquals(5, page.getContent().size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+        TransactionDto first = page.getContent().get(0);
+        assertEquals(fromCard.getId(), first.getFromCardId());
+        assertEquals(fromCard.getMaskedCardNumber(), first.getFromCardNumber());
+        assertEquals(toCard.getMaskedCardNumber(), first.getToCardNumber());
+        assertEquals(owner.getUsername(), first.getUsername());
+    }
+
+    @Test
+    void getTransactionHistory_CardWithoutLast4_IsMaskedLikeTheEntity() {
+        // Given
+        transactionService.transferBetweenCards(
+                new TransferRequest(new BigDecimal("10.00"), fromCard.getId(), toCard.getId(), "not backfilled"),
+                owner.getId(), null);
+        Card notBackfilled = cardRepository.findById(toCard.getId()).orElseThrow();
+        notBackfilled.setLast4(null);
+        cardRepository.save(notBackfilled);
+
+        // When
+        CursorPage<TransactionDto> page = transactionService.getTransactionHistory(owner.getId(), null, 50);
+
+        // Then
+        assertEquals("**** **** **** ****", page.getContent().get(0).getToCardNumber());
+        assertEquals("**** **** **** 0001", page.getContent().get(0).getFromCardNumber());
+    }
+}
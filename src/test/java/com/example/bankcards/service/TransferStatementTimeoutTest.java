@@ -0,0 +1,114 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.TransactionDto;
+import com.example.bankcards.dto.TransferRequest;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.exception.BusinessException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.TransactionRepository;
+import com.example.bankcards.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * A transfer blocked on a card lock longer than the transfer pool's statement timeout is
+ * cancelled by PostgreSQL with SQLSTATE 57014, which reaches the service as a
+ * QueryTimeoutException. H2 does not cancel lock waits on its query timeout, so the
+ * cancellation is raised from the debit instead.
+ */
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:transfer-timeout")
+@ActiveProfiles("test")
+class TransferStatementTimeoutTest {
+
+    @Autowired
+    private TransactionService transactionService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CardRepository cardRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @SpyBean
+    private CardService cardService;
+
+    private User owner;
+    private Card fromCard;
+    private Card toCard;
+
+    @BeforeEach
+    void setUp() {
+        owner = userRepository.save(new User("timeout", "timeout@example.com", "encodedPassword",
+                "Statement", "Timeout", User.Role.USER));
+
+        fromCard = new Card("4300000000000001", "STATEMENT TIMEOUT", LocalDate.now().plusYears(3), owner);
+        fromCard.setBalance(new BigDecimal("100.00"));
+        fromCard = cardRepository.save(fromCard);
+        toCard = cardRepository.save(
+                new Card("4300000000000002", "STATEMENT TIMEOUT", LocalDate.now().plusYears(3), owner));
+    }
+
+    @AfterEach
+    void tearDown() {
+        transactionRepository.deleteAll();
+        cardRepository.deleteAll();
+        userRepository.delete(owner);
+    }
+
+    @Test
+    void transfer_CancelledOnceByStatementTimeout_IsRetried() {
+        // Given
+        doThrow(statementTimeout()).doCallRealMethod()
+                .when(cardService).debitIfSufficient(eq(fromCard.getId()), any());
+
+        // When
+        TransactionDto result = transactionService.transferBetweenCards(
+                new TransferRequest(new BigDecimal("10.00"), fromCard.getId(), toCard.getId(), "retried"),
+                owner.getId(), null);
+
+        // Then
+        assertEquals("COMPLETED", result.getStatus());
+        verify(cardService, times(2)).debitIfSufficient(eq(fromCard.getId()), any());
+        assertEquals(0, new BigDecimal("90.00").compareTo(cardRepository.findById(fromCard.getId()).orElseThrow().getBalance()));
+    }
+
+    @Test
+    void transfer_StillBlockedAfterRetries_IsRejectedAsClientError() {
+        // Given
+        doThrow(statementTimeout()).when(cardService).debitIfSufficient(eq(fromCard.getId()), any());
+
+        // When
+        BusinessException exception = assertThrows(BusinessException.class, () ->
+                transactionService.transferBetweenCards(
+                        new TransferRequest(new BigDecimal("10.00"), fromCard.getId(), toCard.getId(), "blocked"),
+                        owner.getId(), null));
+
+        // Then
+        assertTrue(exception.getMessage().contains("please retry"));
+        assertEquals(0, new BigDecimal("100.00").compareTo(cardRepository.findById(fromCard.getId()).orElseThrow().getBalance()));
+    }
+
+    private static QueryTimeoutException statementTimeout() {
+        return new QueryTimeoutException("ERROR: canceling statement due to statement timeout");
+    }
+}
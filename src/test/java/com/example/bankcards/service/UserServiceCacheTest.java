@@ -0,0 +1,109 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.config.CacheConfig;
+import com.example.bankcards.dto.CreateUserRequest;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class UserServiceCacheTest {
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        user = userRepository.save(new User("cached", "cached@example.com", "encodedPassword",
+                "Cached", "User", User.Role.USER));
+    }
+
+    @AfterEach
+    void tearDown() {
+        userRepository.deleteById(user.getId());
+        cacheManager.getCache(CacheConfig.USERS_BY_USERNAME).clear();
+    }
+
+    @Test
+    void findUserEntityByUsername_RepeatedLookup_IsServedFromCache() {
+        // Given
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        double hitsBefore = cacheGets("hit");
+        userService.findUserEntityByUsername("cached");
+        statistics.clear();
+
+        // When
+        User cached = userService.findUserEntityByUsername("cached");
+
+        // Then
+        assertEquals(user.getId(), cached.getId());
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertEquals(hitsBefore + 1, cacheGets("hit"));
+    }
+
+    @Test
+    void deleteUser_EvictsCachedUser() {
+        // Given
+        assertTrue(userService.findUserEntityByUsername("cached").getIsActive());
+
+        // When
+        userService.deleteUser(user.getId());
+
+        // Then
+        assertFalse(userService.findUserEntityByUsername("cached").getIsActive());
+    }
+
+    @Test
+    void updateUser_EvictsPreviousUsername() {
+        // Given
+        userService.findUserEntityByUsername("cached");
+        CreateUserRequest request = new CreateUserRequest();
+        request.setUsername("renamed");
+        request.setEmail("cached@example.com");
+        request.setFirstName("Cached");
+        request.setLastName("User");
+        request.setRole("ADMIN");
+
+        // When
+        userService.updateUser(user.getId(), request);
+
+        // Then
+        assertThrows(RuntimeException.class, () -> userService.findUserEntityByUsername("cached"));
+        assertEquals(User.Role.ADMIN, userService.findUserEntityByUsername("renamed").getRole());
+    }
+
+    private double cacheGets(String result) {
+        return meterRegistry.get("cache.gets")
+                .tag("cache", CacheConfig.USERS_BY_USERNAME)
+                .tag("result", result)
+                .functionCounter()
+                .count();
+    }
+}
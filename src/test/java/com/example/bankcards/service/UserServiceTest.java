@@ -138,7 +138,9 @@ class UserServiceTest {
     void getAllUsers_Success() {
         // Given
         Pageable pageable = PageRequest.of(0, 10);
-        Page<User> userPage = new PageImpl<>(Arrays.asList(testUser));
+        Page<UserDto> userPage = new PageImpl<>(Arrays.asList(new UserDto(testUser.getId(), testUser.getUsername(),
+                testUser.getEmail(), testUser.getFirstName(), testUser.getLastName(), testUser.getRole(),
+                testUser.getIsActive())));
         when(userRepository.findAllActive(pageable)).thenReturn(userPage);
 
         // When